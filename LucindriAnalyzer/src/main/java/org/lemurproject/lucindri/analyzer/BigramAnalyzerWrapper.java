@@ -0,0 +1,83 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.analyzer;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.AnalyzerWrapper;
+import org.apache.lucene.analysis.FilteringTokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.shingle.ShingleFilter;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+
+/**
+ * Analyzes the bigram fields of a document into the ordered pairs of adjacent
+ * terms that the wrapped analyzer produces for the text. A field named
+ * {@code <field>}{@link #BIGRAM_FIELD_SUFFIX} holds the bigrams of
+ * {@code <field>}. Other fields are analyzed by the wrapped analyzer as they
+ * are.
+ */
+public final class BigramAnalyzerWrapper extends AnalyzerWrapper {
+
+	/** Suffix of the fields that hold the bigrams of a field. */
+	public static final String BIGRAM_FIELD_SUFFIX = ".bigrams";
+
+	/** Separates the two terms of a bigram. */
+	public static final String BIGRAM_SEPARATOR = " ";
+
+	private final Analyzer analyzer;
+
+	public BigramAnalyzerWrapper(Analyzer analyzer) {
+		super(PER_FIELD_REUSE_STRATEGY);
+		this.analyzer = analyzer;
+	}
+
+	/** Returns the bigram of two terms, as the bigram fields index it. */
+	public static String getBigram(String term1, String term2) {
+		return term1 + BIGRAM_SEPARATOR + term2;
+	}
+
+	@Override
+	protected Analyzer getWrappedAnalyzer(String fieldName) {
+		return analyzer;
+	}
+
+	@Override
+	protected TokenStreamComponents wrapComponents(String fieldName, TokenStreamComponents components) {
+		if (fieldName == null || !fieldName.endsWith(BIGRAM_FIELD_SUFFIX)) {
+			return components;
+		}
+		return new TokenStreamComponents(components.getSource(), createBigramFilter(components.getTokenStream()));
+	}
+
+	/**
+	 * Turns the terms into the pairs of terms at adjacent positions. Removed
+	 * stopwords leave gaps, and the pairs across a gap are dropped, so a bigram
+	 * occurs exactly where the ordered window #1 of its two terms matches.
+	 */
+	private static TokenStream createBigramFilter(TokenStream input) {
+		ShingleFilter shingles = new ShingleFilter(input, 2, 2);
+		shingles.setOutputUnigrams(false);
+		shingles.setTokenSeparator(BIGRAM_SEPARATOR);
+		shingles.setFillerToken("");
+		return new FilteringTokenFilter(shingles) {
+			private final CharTermAttribute termAtt = addAttribute(CharTermAttribute.class);
+
+			@Override
+			protected boolean accept() {
+				// Pairs with a filled gap start or end with the separator
+				return termAtt.length() > 0 && termAtt.charAt(0) != BIGRAM_SEPARATOR.charAt(0)
+						&& termAtt.charAt(termAtt.length() - 1) != BIGRAM_SEPARATOR.charAt(0);
+			}
+		};
+	}
+
+}
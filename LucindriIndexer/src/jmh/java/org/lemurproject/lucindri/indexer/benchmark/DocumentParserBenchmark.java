@@ -0,0 +1,173 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.lemurproject.lucindri.indexer.documentparser.DocumentParser;
+import org.lemurproject.lucindri.indexer.domain.IndexingConfiguration;
+import org.lemurproject.lucindri.indexer.domain.ParsedDocument;
+import org.lemurproject.lucindri.indexer.factory.DocumentParserFactory;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Throughput of the document parsers, in documents per second. Every operation
+ * parses one document of the sample collection in dataDirectory, which is in
+ * the parser's format, or else of a {@link SampleCollection} generated in that
+ * format; when the collection is exhausted a new parser is opened on it. The
+ * megabytes counter reports the input read per second, and -prof gc reports
+ * the allocation per document as gc.alloc.rate.norm.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DocumentParserBenchmark {
+
+	private final static long SEED = 42;
+
+	@Param({ "text", "wsj", "gov2", "indrigov2", "json", "wapo", "warc", "cw09", "cw12", "cw22", "car", "marco",
+			"marcofull", "trectext" })
+	public String format;
+
+	// The directory of the collection, or its file for the one-file formats;
+	// empty to generate one
+	@Param("")
+	public String dataDirectory;
+
+	// The size of a generated collection
+	@Param("2000")
+	public int numDocs;
+
+	@Param("500")
+	public int docLength;
+
+	@Param("50000")
+	public int vocabularySize;
+
+	private SampleCollection collection;
+	private Path dataPath;
+	private IndexingConfiguration options;
+	private DocumentParserFactory parserFactory;
+	private DocumentParser parser;
+	// Average number of input megabytes of a document
+	private double documentMegabytes;
+
+	/** Input read, reported per second next to the documents per second. */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.OPERATIONS)
+	public static class Input {
+
+		public double megabytes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			megabytes = 0;
+		}
+
+	}
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		if (dataDirectory.isEmpty()) {
+			collection = new SampleCollection(format, numDocs, docLength, vocabularySize, SEED);
+			dataPath = collection.getDataPath();
+		} else {
+			dataPath = Paths.get(dataDirectory);
+		}
+
+		options = new IndexingConfiguration();
+		options.setDocumentFormat(format);
+		options.setDataDirectory(dataPath.toString());
+		options.setStemmer("kstem");
+		options.setIgnoreCase(true);
+		options.setRemoveStopwords(true);
+		options.setIndexFullText(true);
+		options.setIndexFields(Arrays.asList("title", "body", "heading", "url", "content"));
+		parserFactory = new DocumentParserFactory();
+		documentMegabytes = getSize(dataPath) / 1e6 / countDocuments();
+		parser = parserFactory.getDocumentParser(options);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		if (collection != null) {
+			collection.close();
+		}
+	}
+
+	// Parses the whole collection once
+	private int countDocuments() throws Exception {
+		DocumentParser countingParser = parserFactory.getDocumentParser(options);
+		int documents = 0;
+		while (countingParser.hasNextDocument()) {
+			if (countingParser.getNextDocument() != null) {
+				documents++;
+			}
+		}
+		if (documents == 0) {
+			throw new IllegalStateException("no documents parsed from " + dataPath);
+		}
+		return documents;
+	}
+
+	// Returns the number of bytes of the file, or of the files under the directory
+	private static long getSize(Path path) throws IOException {
+		try (Stream<Path> files = Files.walk(path)) {
+			long size = 0;
+			for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+				size += Files.size(file);
+			}
+			return size;
+		}
+	}
+
+	@Benchmark
+	public ParsedDocument parse(Input input) throws Exception {
+		ParsedDocument document = null;
+		boolean reopened = false;
+		while (document == null) {
+			if (!parser.hasNextDocument()) {
+				if (reopened) {
+					throw new IllegalStateException("no documents parsed from " + dataPath);
+				}
+				parser = parserFactory.getDocumentParser(options);
+				reopened = true;
+			}
+			document = parser.getNextDocument();
+		}
+		input.megabytes += documentMegabytes;
+		return document;
+	}
+
+}
@@ -0,0 +1,83 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.lemurproject.lucindri.indexer.domain.GeneratorConfiguration;
+import org.lemurproject.lucindri.indexer.generator.CollectionGenerator;
+
+/**
+ * A collection written by the {@link CollectionGenerator} in the input format of
+ * one of the document parsers, in a new temporary directory that is deleted on
+ * close. A collection is generated from a seed, so the same parameters always
+ * give the same files.
+ */
+public class SampleCollection implements Closeable {
+
+	private final Path directory;
+	// The path the parser is given: the directory, or the file of one-file formats
+	private final Path dataPath;
+
+	/**
+	 * Writes a collection.
+	 *
+	 * @param format         document format, as in the documentFormat property
+	 * @param numDocs        number of documents
+	 * @param docLength      average number of words in a document
+	 * @param vocabularySize number of distinct words
+	 * @param seed           seed of the generated documents
+	 */
+	public SampleCollection(String format, int numDocs, int docLength, int vocabularySize, long seed)
+			throws IOException {
+		directory = Files.createTempDirectory("lucindri-benchmark");
+		GeneratorConfiguration options = new GeneratorConfiguration();
+		options.setDocumentFormat(format);
+		options.setDataDirectory(directory.toString());
+		options.setNumDocuments(numDocs);
+		options.setDocumentsPerFile(500);
+		options.setDocLength(docLength);
+		options.setVocabularySize(vocabularySize);
+		options.setSeed(seed);
+		dataPath = new CollectionGenerator(options).generate();
+	}
+
+	/** Returns the path to give the parser as its dataDirectory. */
+	public Path getDataPath() {
+		return dataPath;
+	}
+
+	/** Deletes the files of the collection. */
+	@Override
+	public void close() throws IOException {
+		Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
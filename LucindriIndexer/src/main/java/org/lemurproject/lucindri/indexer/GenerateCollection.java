@@ -0,0 +1,47 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.lemurproject.lucindri.indexer.domain.GeneratorConfiguration;
+import org.lemurproject.lucindri.indexer.factory.GeneratorOptionsFactory;
+import org.lemurproject.lucindri.indexer.generator.CollectionGenerator;
+
+/**
+ * Writes a synthetic collection for testing and benchmarking the indexer. It
+ * takes a single properties file as an argument and logs the path to use as
+ * the dataDirectory of the index properties.
+ */
+public class GenerateCollection {
+
+	private static final Logger logger = Logger.getLogger(GenerateCollection.class.getName());
+
+	public static void main(String[] args) throws IOException {
+		String propertiesFilename = args[0];
+		GeneratorOptionsFactory generatorOptionsFactory = new GeneratorOptionsFactory();
+		GeneratorConfiguration generatorConfig = generatorOptionsFactory.getGeneratorOptions(propertiesFilename);
+
+		if (generatorConfig.getDocumentFormat() == null || generatorConfig.getDataDirectory() == null) {
+			throw new IllegalArgumentException("documentFormat and dataDirectory must be defined");
+		}
+
+		CollectionGenerator generator = new CollectionGenerator(generatorConfig);
+		Path dataPath = generator.generate();
+		logger.log(Level.INFO, "Wrote " + generatorConfig.getNumDocuments() + " "
+				+ generatorConfig.getDocumentFormat() + " documents, dataDirectory=" + dataPath);
+	}
+
+}
@@ -70,8 +70,7 @@ public class ClueWeb09DocumentParser extends DocumentParser {
 	ParsedDocumentField fullTextField;
 
 	public ClueWeb09DocumentParser(IndexingConfiguration options) throws IOException {
-		List<File> files = new ArrayList<>();
-		listFiles(options.getDataDirectory(), files);
+		List<File> files = listInputFiles(options.getDataDirectory());
 		fileIterator = files.iterator();
 		getNextStream();
 		ConfigurableAnalyzerFactory analyzerFactory = new ConfigurableAnalyzerFactory();
@@ -102,20 +101,6 @@ public class ClueWeb09DocumentParser extends DocumentParser {
 		}
 	}
 
-	public static void listFiles(String directoryName, List<File> files) {
-		File directory = new File(directoryName);
-
-		// get all the files from a directory
-		File[] fList = directory.listFiles();
-		for (File file : fList) {
-			if (file.isFile()) {
-				files.add(file);
-			} else if (file.isDirectory()) {
-				listFiles(file.getAbsolutePath(), files);
-			}
-		}
-	}
-
 	@Override
 	public boolean hasNextDocument() {
 		return fileIterator.hasNext() || stream != null;
@@ -372,13 +357,14 @@ public class ClueWeb09DocumentParser extends DocumentParser {
 						urlField = new ParsedDocumentField(URL_FIELD, url, false);
 						doc.getDocumentFields().add(urlField);
 
-						double urlDepth = url.chars().filter(ch -> ch == '/').count() - 2;
+						// Numeric fields are written as long doc values
+						long urlDepth = url.chars().filter(ch -> ch == '/').count() - 2;
 						urlDepthField = new ParsedDocumentField(URL_DEPTH_FIELD, String.valueOf(urlDepth), true);
 						doc.getDocumentFields().add(urlDepthField);
 
-						String isWikipedia = String.valueOf(0.0);
+						String isWikipedia = String.valueOf(0);
 						if (url.contains("wikipedia.org")) {
-							isWikipedia = String.valueOf(1.0);
+							isWikipedia = String.valueOf(1);
 						}
 						urlWikipediaField = new ParsedDocumentField(URL_WIKIPEDIA_FIELD, isWikipedia, true);
 						doc.getDocumentFields().add(urlWikipediaField);
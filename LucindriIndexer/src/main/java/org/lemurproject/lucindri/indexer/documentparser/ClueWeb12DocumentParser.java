@@ -65,8 +65,7 @@ public class ClueWeb12DocumentParser extends DocumentParser {
 	ParsedDocumentField fullTextField;
 
 	public ClueWeb12DocumentParser(IndexingConfiguration options) throws IOException {
-		List<File> files = new ArrayList<>();
-		listFiles(options.getDataDirectory(), files);
+		List<File> files = listInputFiles(options.getDataDirectory());
 		fileIterator = files.iterator();
 		getNextStream();
 		ConfigurableAnalyzerFactory analyzerFactory = new ConfigurableAnalyzerFactory();
@@ -94,20 +93,6 @@ public class ClueWeb12DocumentParser extends DocumentParser {
 		}
 	}
 
-	public static void listFiles(String directoryName, List<File> files) {
-		File directory = new File(directoryName);
-
-		// get all the files from a directory
-		File[] fList = directory.listFiles();
-		for (File file : fList) {
-			if (file.isFile()) {
-				files.add(file);
-			} else if (file.isDirectory()) {
-				listFiles(file.getAbsolutePath(), files);
-			}
-		}
-	}
-
 	@Override
 	public boolean hasNextDocument() {
 		return fileIterator.hasNext() || stream != null;
@@ -1,6 +1,14 @@
 package org.lemurproject.lucindri.indexer.documentparser;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -11,8 +19,13 @@ import org.xml.sax.SAXException;
 public abstract class DocumentParser {
 
 	public final static String FULLTEXT_FIELD = "fulltext";
-	public final static String FULLTEXT_LENGTH_FIELD = "fulltextlength";
 	public final static String EXTERNALID_FIELD = "id";
+	/**
+	 * Stored number of the document. A single parser numbers documents 0, 1, 2,
+	 * ..., but with several parser threads it is "file-doc", the number of the
+	 * input file in path order and of the document in the file. The searcher does
+	 * not read it; results carry the {@link #EXTERNALID_FIELD}.
+	 */
 	public final static String INTERNALID_FIELD = "internalId";
 	public final static String TITLE_FIELD = "title";
 	public final static String URL_FIELD = "url";
@@ -33,6 +46,37 @@ public abstract class DocumentParser {
 	 */
 	public abstract ParsedDocument getNextDocument() throws IOException, SAXException;
 
+	/**
+	 * Lists the input files of a collection: every file under the data
+	 * directory, in path order, or the data directory itself if it is a file.
+	 * 
+	 * @param dataDirectory
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<File> listInputFiles(String dataDirectory) throws IOException {
+		return listInputFiles(dataDirectory, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Lists the input files of a collection whose parser does not read
+	 * subdirectories: the files directly in the data directory, in path order,
+	 * or the data directory itself if it is a file.
+	 * 
+	 * @param dataDirectory
+	 * @return
+	 * @throws IOException
+	 */
+	public static List<File> listTopLevelInputFiles(String dataDirectory) throws IOException {
+		return listInputFiles(dataDirectory, 1);
+	}
+
+	private static List<File> listInputFiles(String dataDirectory, int maxDepth) throws IOException {
+		try (Stream<Path> paths = Files.walk(Paths.get(dataDirectory), maxDepth, FileVisitOption.FOLLOW_LINKS)) {
+			return paths.filter(Files::isRegularFile).sorted().map(Path::toFile).collect(Collectors.toList());
+		}
+	}
+
 	public static long countTokens(String text, String fieldName) throws IOException {
 		if (text == null || text.length() == 0) {
 			return 0l;
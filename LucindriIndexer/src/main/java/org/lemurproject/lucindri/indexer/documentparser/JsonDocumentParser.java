@@ -6,9 +6,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.StringReader;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.StringJoiner;
@@ -38,8 +36,7 @@ public class JsonDocumentParser extends DocumentParser {
 
 	public JsonDocumentParser(IndexingConfiguration options) throws IOException {
 		gson = new Gson();
-		File folder = Paths.get(options.getDataDirectory()).toFile();
-		fileIterator = Arrays.asList(folder.listFiles()).iterator();
+		fileIterator = listTopLevelInputFiles(options.getDataDirectory()).iterator();
 		getNextScanner();
 		nextLine = "";
 		ConfigurableAnalyzerFactory analyzerFactory = new ConfigurableAnalyzerFactory();
@@ -34,12 +34,12 @@ public class TextDocumentParser extends DocumentParser {
 	private final static String BODY_FIELD = "body";
 
 	private int docNum;
-	private File[] files;
+	private List<File> files;
 	private List<String> fieldsToIndex;
 	private boolean indexFullText;
 
-	public TextDocumentParser(IndexingConfiguration options) {
-		files = new File(options.getDataDirectory()).listFiles();
+	public TextDocumentParser(IndexingConfiguration options) throws IOException {
+		files = listTopLevelInputFiles(options.getDataDirectory());
 		docNum = 0;
 		fieldsToIndex = options.getIndexFields();
 		if (fieldsToIndex == null) {
@@ -50,7 +50,7 @@ public class TextDocumentParser extends DocumentParser {
 
 	@Override
 	public boolean hasNextDocument() {
-		if (docNum < files.length) {
+		if (docNum < files.size()) {
 			return true;
 		}
 		return false;
@@ -58,7 +58,7 @@ public class TextDocumentParser extends DocumentParser {
 
 	@Override
 	public ParsedDocument getNextDocument() throws IOException {
-		String content = new String(Files.readAllBytes(Paths.get(files[docNum].getPath())));
+		String content = new String(Files.readAllBytes(Paths.get(files.get(docNum).getPath())));
 
 		ParsedDocument doc = new ParsedDocument();
 		doc.setDocumentFields(new ArrayList<>());
@@ -66,7 +66,7 @@ public class TextDocumentParser extends DocumentParser {
 		ParsedDocumentField internalIdField = new ParsedDocumentField(INTERNALID_FIELD, String.valueOf(docNum), false);
 		doc.getDocumentFields().add(internalIdField);
 
-		ParsedDocumentField externalIdField = new ParsedDocumentField(EXTERNALID_FIELD, files[docNum].getName(), false);
+		ParsedDocumentField externalIdField = new ParsedDocumentField(EXTERNALID_FIELD, files.get(docNum).getName(), false);
 		doc.getDocumentFields().add(externalIdField);
 
 		if (fieldsToIndex.contains(BODY_FIELD)) {
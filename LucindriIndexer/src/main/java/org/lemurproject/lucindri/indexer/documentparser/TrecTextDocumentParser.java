@@ -43,8 +43,7 @@ public class TrecTextDocumentParser extends DocumentParser {
 
 	public TrecTextDocumentParser(IndexingConfiguration options) throws IOException {
 		// File folder = Paths.get(options.getDataDirectory()).toFile();
-		List<File> files = new ArrayList<>();
-		listFiles(options.getDataDirectory(), files);
+		List<File> files = listInputFiles(options.getDataDirectory());
 		fileIterator = files.iterator();
 		getNextScanner();
 		nextLine = "";
@@ -55,20 +54,6 @@ public class TrecTextDocumentParser extends DocumentParser {
 		indexFullText = options.isIndexFullText();
 	}
 
-	public static void listFiles(String directoryName, List<File> files) {
-		File directory = new File(directoryName);
-
-		// get all the files from a directory
-		File[] fList = directory.listFiles();
-		for (File file : fList) {
-			if (file.isFile()) {
-				files.add(file);
-			} else if (file.isDirectory()) {
-				listFiles(file.getAbsolutePath(), files);
-			}
-		}
-	}
-
 	private void getNextScanner() throws IOException {
 		if (fileIterator.hasNext()) {
 			File nextFile = fileIterator.next();
@@ -117,6 +102,9 @@ public class TrecTextDocumentParser extends DocumentParser {
 				while (docBuffer != null && ((nextLine = br.readLine()) != null) && !nextLine.startsWith("</DOC>")) {
 					// nextLine = nextLine.replaceAll("\\&\\#[0-9]+\\;", "");
 					docBuffer.add(nextLine);
+					if (docno.length() == 0 && nextLine.startsWith("<DOCNO>")) {
+						docno = nextLine.substring(7, nextLine.length() - 8);
+					}
 					if (nextLine.equals("<TEXT>")) {
 						textBuffer = new StringJoiner("");
 						inText = true;
@@ -56,8 +56,7 @@ public class WARCDocumentParser extends DocumentParser {
 
 	public WARCDocumentParser(IndexingConfiguration options) throws IOException {
 		// File folder = Paths.get(options.getDataDirectory()).toFile();
-		List<File> files = new ArrayList<>();
-		listFiles(options.getDataDirectory(), files);
+		List<File> files = listInputFiles(options.getDataDirectory());
 		fileIterator = files.iterator();
 		getNextScanner();
 		nextLine = "";
@@ -68,20 +67,6 @@ public class WARCDocumentParser extends DocumentParser {
 		indexFullText = options.isIndexFullText();
 	}
 
-	public static void listFiles(String directoryName, List<File> files) {
-		File directory = new File(directoryName);
-
-		// get all the files from a directory
-		File[] fList = directory.listFiles();
-		for (File file : fList) {
-			if (file.isFile()) {
-				files.add(file);
-			} else if (file.isDirectory()) {
-				listFiles(file.getAbsolutePath(), files);
-			}
-		}
-	}
-
 	private void getNextScanner() throws IOException {
 		if (fileIterator.hasNext()) {
 			File nextFile = fileIterator.next();
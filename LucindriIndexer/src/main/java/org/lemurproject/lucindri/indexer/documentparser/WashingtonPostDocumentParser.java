@@ -5,9 +5,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.nio.file.Paths;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.StringJoiner;
@@ -36,8 +34,7 @@ public class WashingtonPostDocumentParser extends DocumentParser {
 
 	public WashingtonPostDocumentParser(IndexingConfiguration options) throws IOException {
 		gson = new Gson();
-		File folder = Paths.get(options.getDataDirectory()).toFile();
-		fileIterator = Arrays.asList(folder.listFiles()).iterator();
+		fileIterator = listTopLevelInputFiles(options.getDataDirectory()).iterator();
 		getNextScanner();
 		nextLine = "";
 		ConfigurableAnalyzerFactory analyzerFactory = new ConfigurableAnalyzerFactory();
@@ -0,0 +1,80 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer.documentwriter;
+
+import java.io.IOException;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenFilter;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.tokenattributes.PositionIncrementAttribute;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.index.IndexableFieldType;
+
+/**
+ * Text field that counts the terms it is analyzed into while it is indexed, and
+ * adds the count to the length field of its document. The count is the length
+ * the norm of the field encodes: every term except the ones stacked at the
+ * position of the previous term.
+ * <p>
+ * Fields are indexed in the order they were added to the document, so the
+ * length field must be added after all the values of the field it counts.
+ */
+public class LengthCountingField extends Field {
+
+	private final NumericDocValuesField lengthField;
+
+	public LengthCountingField(String name, String value, IndexableFieldType type,
+			NumericDocValuesField lengthField) {
+		super(name, value, type);
+		this.lengthField = lengthField;
+	}
+
+	@Override
+	public TokenStream tokenStream(Analyzer analyzer, TokenStream reuse) {
+		return new LengthCountingFilter(super.tokenStream(analyzer, reuse));
+	}
+
+	private final class LengthCountingFilter extends TokenFilter {
+		private final PositionIncrementAttribute posIncAtt = addAttribute(PositionIncrementAttribute.class);
+		private long length;
+
+		LengthCountingFilter(TokenStream input) {
+			super(input);
+		}
+
+		@Override
+		public boolean incrementToken() throws IOException {
+			if (!input.incrementToken()) {
+				return false;
+			}
+			if (posIncAtt.getPositionIncrement() != 0) {
+				length++;
+			}
+			return true;
+		}
+
+		@Override
+		public void end() throws IOException {
+			super.end();
+			lengthField.setLongValue(lengthField.numericValue().longValue() + length);
+		}
+
+		@Override
+		public void reset() throws IOException {
+			super.reset();
+			length = 0;
+		}
+	}
+
+}
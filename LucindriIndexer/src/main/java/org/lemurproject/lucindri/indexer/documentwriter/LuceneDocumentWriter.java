@@ -12,10 +12,17 @@
 package org.lemurproject.lucindri.indexer.documentwriter;
 
 import java.io.IOException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -24,30 +31,69 @@ import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
 import org.apache.lucene.document.FieldType;
 import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexOptions;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.similarities.LMDirichletSimilarity;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.lemurproject.lucindri.analyzer.BigramAnalyzerWrapper;
+import org.lemurproject.lucindri.indexer.documentparser.DocumentParser;
 import org.lemurproject.lucindri.indexer.domain.IndexingConfiguration;
 import org.lemurproject.lucindri.indexer.domain.ParsedDocument;
 import org.lemurproject.lucindri.indexer.domain.ParsedDocumentField;
 import org.lemurproject.lucindri.indexer.factory.ConfigurableAnalyzerFactory;
+import org.lemurproject.lucindri.searcher.domain.IndriConstants;
 
 public class LuceneDocumentWriter implements DocumentWriter {
 
 	private static final Logger logger = Logger.getLogger(LuceneDocumentWriter.class.getName());
 
+	// Doc values column the searcher reads external ids from
+	private static final String EXTERNALID_FIELD = "externalId";
+	// Directory of a shard in the index directory, followed by its number
+	private static final String SHARD_DIRECTORY_PREFIX = "shard-";
+
 	private Analyzer analyzer;
-	private IndexWriter iWriter;
+	private Path indexPath;
+	// The index, or one shard for every writer thread
+	private List<IndexShard> shards;
+	private ThreadLocal<IndexShard> threadShard;
+	private boolean keepShards;
 	private FieldType fieldType;
+	private FieldType textFieldType;
+	private FieldType bigramFieldType;
 	private Similarity similarity;
+	// The fulltext field and the fields listed in fieldNames
+	private Set<String> textFields;
+	private boolean indexBigrams;
+
+	/**
+	 * An IndexWriter and the documents waiting to be added to it in one batch.
+	 */
+	private static class IndexShard {
+
+		private final Path path;
+		private final IndexWriter iWriter;
+		private List<Document> luceneDocs;
+
+		private IndexShard(Path path, IndexWriter iWriter) {
+			this.path = path;
+			this.iWriter = iWriter;
+			luceneDocs = new ArrayList<>();
+		}
 
-	private List<Document> luceneDocs;
-	private Field luceneField;
-	private Document luceneDoc;
+	}
 
 	public LuceneDocumentWriter(IndexingConfiguration options)
 			throws IOException, ClassCastException, ClassNotFoundException {
@@ -55,13 +101,36 @@ public class LuceneDocumentWriter implements DocumentWriter {
 		analyzer = analyzerFactory.getConfigurableAnalyzer(options);
 		this.similarity = new LMDirichletSimilarity();
 
-		String indexDirectory = Paths.get(options.getIndexDirectory(), options.getIndexName()).toString();
-		iWriter = createIndexWriter(indexDirectory, analyzer);
+		indexPath = Paths.get(options.getIndexDirectory(), options.getIndexName());
+		shards = new ArrayList<>();
+		if (options.isShardIndex() && options.getWriterThreads() > 1) {
+			for (int i = 0; i < options.getWriterThreads(); i++) {
+				Path shardPath = indexPath.resolve(SHARD_DIRECTORY_PREFIX + i);
+				shards.add(new IndexShard(shardPath, createIndexWriter(shardPath.toString(), analyzer, 1)));
+			}
+		} else {
+			shards.add(new IndexShard(indexPath,
+					createIndexWriter(indexPath.toString(), analyzer, options.getWriterThreads())));
+		}
+		keepShards = options.isKeepShards();
+		// Every thread that writes documents takes the next shard
+		AtomicInteger nextShard = new AtomicInteger();
+		threadShard = ThreadLocal.withInitial(() -> shards.get(nextShard.getAndIncrement() % shards.size()));
 
 		fieldType = getFieldType();
-
-		// luceneDoc = new Document();
-		luceneDocs = new ArrayList<>();
+		textFieldType = fieldType;
+		if (options.isStoreDocumentVectors()) {
+			textFieldType = getDocumentVectorFieldType();
+		}
+		bigramFieldType = getBigramFieldType();
+		indexBigrams = options.isIndexBigrams();
+		textFields = new HashSet<>();
+		if (options.isIndexFullText()) {
+			textFields.add(DocumentParser.FULLTEXT_FIELD);
+		}
+		if (options.getIndexFields() != null) {
+			textFields.addAll(options.getIndexFields());
+		}
 	}
 
 	/**
@@ -70,10 +139,12 @@ public class LuceneDocumentWriter implements DocumentWriter {
 	 * @param indexDirectory
 	 * @param docParser
 	 * @param analyzer
+	 * @param writerThreads
 	 * @return
 	 * @throws IOException
 	 */
-	private IndexWriter createIndexWriter(String indexDirectory, Analyzer analyzer) throws IOException {
+	private IndexWriter createIndexWriter(String indexDirectory, Analyzer analyzer, int writerThreads)
+			throws IOException {
 
 		Path path = Paths.get(indexDirectory);
 		Directory directory = FSDirectory.open(path);
@@ -83,6 +154,9 @@ public class LuceneDocumentWriter implements DocumentWriter {
 		config.setOpenMode(OpenMode.CREATE);
 		config.setSimilarity(similarity);
 		config.setUseCompoundFile(false);
+		// Every writing thread fills its own in-memory segment, so they share a buffer
+		// sized for all of them rather than flushing many tiny segments
+		config.setRAMBufferSizeMB(IndexWriterConfig.DEFAULT_RAM_BUFFER_SIZE_MB * Math.max(1, writerThreads));
 		IndexWriter iwriter = new IndexWriter(directory, config);
 
 		return iwriter;
@@ -106,38 +180,191 @@ public class LuceneDocumentWriter implements DocumentWriter {
 		return fieldType;
 	}
 
+	/**
+	 * Defines how the text fields are stored when document vectors are kept. The
+	 * term vector of a document is its list of terms with their frequencies,
+	 * which relevance feedback reads instead of analyzing the stored text again.
+	 * 
+	 * @return
+	 */
+	private FieldType getDocumentVectorFieldType() {
+		FieldType fieldType = new FieldType(getFieldType());
+		fieldType.setStoreTermVectors(true);
+		fieldType.freeze();
+		return fieldType;
+	}
+
+	/**
+	 * Defines how the bigrams of a field are stored. They are only looked up as
+	 * whole terms and scored with the length of the field they come from, so
+	 * they have no positions and no norms.
+	 * 
+	 * @return
+	 */
+	private FieldType getBigramFieldType() {
+		FieldType fieldType = new FieldType();
+		fieldType.setTokenized(true);
+		fieldType.setStored(false);
+		fieldType.setOmitNorms(true);
+		fieldType.setIndexOptions(org.apache.lucene.index.IndexOptions.DOCS_AND_FREQS);
+		fieldType.freeze();
+		return fieldType;
+	}
+
+	/**
+	 * Adds a document to the index in batches of 500. Documents can be written
+	 * from several threads at once: only taking a full batch is synchronized, and
+	 * the IndexWriter analyzes the batches of different threads concurrently. In
+	 * a sharded index, every thread writes to an IndexWriter of its own.
+	 */
 	public void writeDocuments(ParsedDocument parsedDoc) throws IOException {
 		if (parsedDoc != null) {
-			luceneDoc = new Document();
+			Document luceneDoc = new Document();
+			// Exact lengths of the text fields, counted as they are indexed
+			Map<String, NumericDocValuesField> lengthFields = new LinkedHashMap<>();
+			boolean hasExternalId = false;
 
 			// Add document to search engine
 			for (ParsedDocumentField docField : parsedDoc.getDocumentFields()) {
 				if (docField.getContent() != null) {
 					if (!docField.isNumeric()) {
-						luceneField = new Field(docField.getFieldName(), docField.getContent(), fieldType);
+						boolean textField = textFields.contains(docField.getFieldName());
+						Field luceneField;
+						if (textField) {
+							NumericDocValuesField lengthField = lengthFields.computeIfAbsent(docField.getFieldName(),
+									name -> new NumericDocValuesField(name + IndriConstants.FIELD_LENGTH_SUFFIX, 0L));
+							luceneField = new LengthCountingField(docField.getFieldName(), docField.getContent(),
+									textFieldType, lengthField);
+						} else {
+							luceneField = new Field(docField.getFieldName(), docField.getContent(), fieldType);
+						}
 						luceneDoc.add(luceneField);
+						// Parsers name the external id either externalId or id
+						if (!hasExternalId && (docField.getFieldName().equals(EXTERNALID_FIELD)
+								|| docField.getFieldName().equals(DocumentParser.EXTERNALID_FIELD))) {
+							luceneDoc.add(new SortedDocValuesField(EXTERNALID_FIELD, new BytesRef(docField.getContent())));
+							hasExternalId = true;
+						}
+						if (indexBigrams && textField) {
+							luceneDoc.add(new Field(
+									docField.getFieldName() + BigramAnalyzerWrapper.BIGRAM_FIELD_SUFFIX,
+									docField.getContent(), bigramFieldType));
+						}
 					} else {
 						luceneDoc.add(new NumericDocValuesField(docField.getFieldName(),
 								Long.valueOf(docField.getContent()).longValue()));
 					}
 				}
 			}
-			// iWriter.addDocument(luceneDoc);
-			luceneDocs.add(luceneDoc);
+			// After the fields they count
+			for (NumericDocValuesField lengthField : lengthFields.values()) {
+				luceneDoc.add(lengthField);
+			}
+			IndexShard shard = threadShard.get();
+			List<Document> batch = null;
+			synchronized (shard) {
+				shard.luceneDocs.add(luceneDoc);
+				if (shard.luceneDocs.size() >= 500) {
+					batch = shard.luceneDocs;
+					shard.luceneDocs = new ArrayList<>();
+				}
+			}
+			if (batch != null) {
+				shard.iWriter.addDocuments(batch);
+			}
+		}
+	}
 
+	public void closeDocumentWriter() throws IOException {
+		boolean mergeShards = shards.size() > 1 && !keepShards;
+		for (IndexShard shard : shards) {
+			if (shard.luceneDocs.size() > 0) {
+				shard.iWriter.addDocuments(shard.luceneDocs);
+			}
+			if (!mergeShards) {
+				writeFieldStatistics(shard.iWriter);
+			}
+			// writeTotalDocLens();
+			shard.iWriter.close();
 		}
-		if (luceneDocs.size() >= 500) {
-			iWriter.addDocuments(luceneDocs);
-			luceneDocs = new ArrayList<>();
+		if (mergeShards) {
+			mergeShards();
 		}
 	}
 
-	public void closeDocumentWriter() throws IOException {
-		if (luceneDocs.size() > 0) {
-			iWriter.addDocuments(luceneDocs);
+	/**
+	 * Adds the shards to a single index in the index directory and deletes them.
+	 * IndexWriter.addIndexes copies the segments of the shards without merging
+	 * them, so this takes about as long as copying the files.
+	 * 
+	 * @throws IOException
+	 */
+	private void mergeShards() throws IOException {
+		Directory[] shardDirectories = new Directory[shards.size()];
+		for (int i = 0; i < shards.size(); i++) {
+			shardDirectories[i] = shards.get(i).iWriter.getDirectory();
 		}
-		// writeTotalDocLens();
+		IndexWriter iWriter = createIndexWriter(indexPath.toString(), analyzer, 1);
+		iWriter.addIndexes(shardDirectories);
+		writeFieldStatistics(iWriter);
 		iWriter.close();
+
+		for (int i = 0; i < shards.size(); i++) {
+			for (String fileName : shardDirectories[i].listAll()) {
+				shardDirectories[i].deleteFile(fileName);
+			}
+			shardDirectories[i].close();
+			Files.delete(shards.get(i).path);
+		}
+	}
+
+	/**
+	 * Stores the collection statistics of every indexed field in the commit user
+	 * data, so that the searcher does not have to scan the norms of the whole
+	 * index every time it is opened. The values are the ones the searcher would
+	 * compute itself: the term statistics of the field, with the norm of every
+	 * document added to the collection length. The documents are committed first
+	 * and the statistics are stored with the next commit, the one of closing the
+	 * writer, whose generation the searcher checks to tell whether the index was
+	 * changed since.
+	 * 
+	 * @param iWriter
+	 * @throws IOException
+	 */
+	private void writeFieldStatistics(IndexWriter iWriter) throws IOException {
+		iWriter.commit();
+		Map<String, String> userData = new HashMap<>();
+		try (DirectoryReader reader = DirectoryReader.open(iWriter.getDirectory())) {
+			userData.put(IndriConstants.COMMIT_GENERATION,
+					Long.toString(reader.getIndexCommit().getGeneration() + 1));
+			userData.put(IndriConstants.COMMIT_MAX_DOC, Integer.toString(reader.maxDoc()));
+			for (FieldInfo fieldInfo : FieldInfos.getMergedFieldInfos(reader)) {
+				if (fieldInfo.getIndexOptions() == IndexOptions.NONE) {
+					continue;
+				}
+				long docCount = 0;
+				long sumTotalTermFreq = 0;
+				long sumDocFreq = 0;
+				for (LeafReaderContext leaf : reader.leaves()) {
+					Terms terms = leaf.reader().terms(fieldInfo.name);
+					if (terms == null) {
+						continue;
+					}
+					docCount += terms.getDocCount();
+					sumTotalTermFreq += terms.getSumTotalTermFreq();
+					sumDocFreq += terms.getSumDocFreq();
+					NumericDocValues norms = leaf.reader().getNormValues(fieldInfo.name);
+					if (norms != null) {
+						while (norms.nextDoc() != NumericDocValues.NO_MORE_DOCS) {
+							sumTotalTermFreq += norms.longValue();
+						}
+					}
+				}
+				userData.put(IndriConstants.COMMIT_FIELD_STATISTICS_PREFIX + fieldInfo.name,
+						docCount + "," + sumTotalTermFreq + "," + sumDocFreq);
+			}
+		}
+		iWriter.setLiveCommitData(userData.entrySet());
 	}
 
 //	private void writeTotalDocLens() throws IOException {
@@ -29,7 +29,7 @@ public class SolrDocumentWriter implements DocumentWriter {
 	}
 
 	@Override
-	public void writeDocuments(ParsedDocument parsedDoc) throws IOException {
+	public synchronized void writeDocuments(ParsedDocument parsedDoc) throws IOException {
 		if (parsedDoc != null) {
 			SolrInputDocument solrDocument = new SolrInputDocument();
 
@@ -66,7 +66,7 @@ public class SolrDocumentWriter implements DocumentWriter {
 	}
 
 	@Override
-	public void closeDocumentWriter() throws IOException {
+	public synchronized void closeDocumentWriter() throws IOException {
 		if (docList.size() > 0) {
 			// Commit within 5 minutes.
 			UpdateResponse resp;
@@ -0,0 +1,119 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer.domain;
+
+import java.io.Serializable;
+
+public class GeneratorConfiguration extends BaseObject implements Serializable {
+
+	private static final long serialVersionUID = -4512770346317851268L;
+
+	// Defines the layout of the files, as the documentFormat of the parser
+	private String documentFormat;
+	private String dataDirectory;
+
+	// Collection size
+	private int numDocuments = 10000;
+	private int documentsPerFile = 1000;
+
+	// Document lengths, in words
+	private int docLength = 500;
+	private String docLengthDistribution = "lognormal";
+	private double docLengthDeviation = 0.5;
+
+	// Vocabulary
+	private int vocabularySize = 100000;
+	private double zipfExponent = 1.0;
+
+	private long seed = 42;
+
+	public String getDocumentFormat() {
+		return documentFormat;
+	}
+
+	public void setDocumentFormat(String documentFormat) {
+		this.documentFormat = documentFormat;
+	}
+
+	public String getDataDirectory() {
+		return dataDirectory;
+	}
+
+	public void setDataDirectory(String dataDirectory) {
+		this.dataDirectory = dataDirectory;
+	}
+
+	public int getNumDocuments() {
+		return numDocuments;
+	}
+
+	public void setNumDocuments(int numDocuments) {
+		this.numDocuments = numDocuments;
+	}
+
+	public int getDocumentsPerFile() {
+		return documentsPerFile;
+	}
+
+	public void setDocumentsPerFile(int documentsPerFile) {
+		this.documentsPerFile = documentsPerFile;
+	}
+
+	public int getDocLength() {
+		return docLength;
+	}
+
+	public void setDocLength(int docLength) {
+		this.docLength = docLength;
+	}
+
+	public String getDocLengthDistribution() {
+		return docLengthDistribution;
+	}
+
+	public void setDocLengthDistribution(String docLengthDistribution) {
+		this.docLengthDistribution = docLengthDistribution;
+	}
+
+	public double getDocLengthDeviation() {
+		return docLengthDeviation;
+	}
+
+	public void setDocLengthDeviation(double docLengthDeviation) {
+		this.docLengthDeviation = docLengthDeviation;
+	}
+
+	public int getVocabularySize() {
+		return vocabularySize;
+	}
+
+	public void setVocabularySize(int vocabularySize) {
+		this.vocabularySize = vocabularySize;
+	}
+
+	public double getZipfExponent() {
+		return zipfExponent;
+	}
+
+	public void setZipfExponent(double zipfExponent) {
+		this.zipfExponent = zipfExponent;
+	}
+
+	public long getSeed() {
+		return seed;
+	}
+
+	public void setSeed(long seed) {
+		this.seed = seed;
+	}
+
+}
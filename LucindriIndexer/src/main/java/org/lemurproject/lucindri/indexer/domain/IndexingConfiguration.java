@@ -14,6 +14,8 @@ public class IndexingConfiguration extends BaseObject implements Serializable {
 	// Field Options
 	private boolean indexFullText;
 	private List<String> indexFields;
+	private boolean indexBigrams;
+	private boolean storeDocumentVectors;
 
 	// Analyzer Options
 	private String stemmer;
@@ -26,6 +28,14 @@ public class IndexingConfiguration extends BaseObject implements Serializable {
 	// Defines whether to index in Lucene or Solr
 	private String indexPlatform;
 
+	// Number of threads parsing input files and writing parsed documents to the index. With more than one
+	// parser thread, the internalId of a document is "file-doc" instead of a plain document number
+	private int parserThreads = 1;
+	private int writerThreads = 1;
+	// Whether every writer thread writes its own shard, and whether the shards are kept rather than merged
+	private boolean shardIndex;
+	private boolean keepShards;
+
 	// Solr Options
 	private String host;
 	private String port;
@@ -110,6 +120,54 @@ public class IndexingConfiguration extends BaseObject implements Serializable {
 		this.indexFields = indexFields;
 	}
 
+	public boolean isIndexBigrams() {
+		return indexBigrams;
+	}
+
+	public void setIndexBigrams(boolean indexBigrams) {
+		this.indexBigrams = indexBigrams;
+	}
+
+	public boolean isStoreDocumentVectors() {
+		return storeDocumentVectors;
+	}
+
+	public void setStoreDocumentVectors(boolean storeDocumentVectors) {
+		this.storeDocumentVectors = storeDocumentVectors;
+	}
+
+	public int getParserThreads() {
+		return parserThreads;
+	}
+
+	public void setParserThreads(int parserThreads) {
+		this.parserThreads = parserThreads;
+	}
+
+	public int getWriterThreads() {
+		return writerThreads;
+	}
+
+	public void setWriterThreads(int writerThreads) {
+		this.writerThreads = writerThreads;
+	}
+
+	public boolean isShardIndex() {
+		return shardIndex;
+	}
+
+	public void setShardIndex(boolean shardIndex) {
+		this.shardIndex = shardIndex;
+	}
+
+	public boolean isKeepShards() {
+		return keepShards;
+	}
+
+	public void setKeepShards(boolean keepShards) {
+		this.keepShards = keepShards;
+	}
+
 	public String getHost() {
 		return host;
 	}
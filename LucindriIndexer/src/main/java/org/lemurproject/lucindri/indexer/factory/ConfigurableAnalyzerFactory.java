@@ -12,13 +12,15 @@
 package org.lemurproject.lucindri.indexer.factory;
 
 import org.apache.lucene.analysis.Analyzer;
+import org.lemurproject.lucindri.analyzer.BigramAnalyzerWrapper;
 import org.lemurproject.lucindri.analyzer.EnglishAnalyzerConfigurable;
 import org.lemurproject.lucindri.analyzer.EnglishAnalyzerConfigurable.StemmerType;
 import org.lemurproject.lucindri.indexer.domain.IndexingConfiguration;
 
 /**
  * Instantiates a Lucene analyzer based on the user input for properties:
- * stemmer, removeStopwords, and ignoreCase.
+ * stemmer, removeStopwords, and ignoreCase. With indexBigrams, the bigram
+ * fields are analyzed into pairs of adjacent terms.
  * 
  * @author cmw2
  *
@@ -41,6 +43,9 @@ public class ConfigurableAnalyzerFactory {
 			}
 			an.setStemmer(stemmerType);
 			analyzer = an;
+			if (options.isIndexBigrams()) {
+				analyzer = new BigramAnalyzerWrapper(an);
+			}
 		}
 		return analyzer;
 	}
@@ -12,7 +12,9 @@
 package org.lemurproject.lucindri.indexer.factory;
 
 import java.lang.reflect.InvocationTargetException;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
 
@@ -44,6 +46,9 @@ import org.lemurproject.lucindri.indexer.domain.IndexingConfiguration;
  */
 public class DocumentParserFactory {
 
+	// Formats whose parsers read only the files directly in the data directory
+	private final static Set<String> TOP_LEVEL_FORMATS = new HashSet<>(Arrays.asList("text", "json", "wapo"));
+
 	private Map<String, Class<? extends DocumentParser>> docParserMap;
 
 	public DocumentParserFactory() {
@@ -68,6 +73,14 @@ public class DocumentParserFactory {
 		return docParserMap.keySet();
 	}
 
+	/**
+	 * Returns whether the parser of a format reads the files in the
+	 * subdirectories of the data directory too.
+	 */
+	public boolean readsSubdirectories(String documentFormat) {
+		return !TOP_LEVEL_FORMATS.contains(documentFormat);
+	}
+
 	public DocumentParser getDocumentParser(IndexingConfiguration options)
 			throws InstantiationException, IllegalAccessException, IllegalArgumentException, InvocationTargetException,
 			NoSuchMethodException, SecurityException {
@@ -0,0 +1,62 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer.factory;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import org.lemurproject.lucindri.indexer.domain.GeneratorConfiguration;
+
+/**
+ * Defines the GeneratorConfiguration object based on the user input properties
+ * file. Properties that are not given keep their defaults.
+ */
+public class GeneratorOptionsFactory {
+
+	public GeneratorConfiguration getGeneratorOptions(String propertiesFileName) throws IOException {
+		Properties properties = new Properties();
+		try (InputStream is = new FileInputStream(propertiesFileName)) {
+			properties.load(is);
+		}
+		GeneratorConfiguration options = new GeneratorConfiguration();
+		options.setDocumentFormat(properties.getProperty("documentFormat"));
+		options.setDataDirectory(properties.getProperty("dataDirectory"));
+		if (properties.getProperty("numDocuments") != null) {
+			options.setNumDocuments(Integer.parseInt(properties.getProperty("numDocuments").trim()));
+		}
+		if (properties.getProperty("documentsPerFile") != null) {
+			options.setDocumentsPerFile(Integer.parseInt(properties.getProperty("documentsPerFile").trim()));
+		}
+		if (properties.getProperty("docLength") != null) {
+			options.setDocLength(Integer.parseInt(properties.getProperty("docLength").trim()));
+		}
+		if (properties.getProperty("docLengthDistribution") != null) {
+			options.setDocLengthDistribution(properties.getProperty("docLengthDistribution").trim());
+		}
+		if (properties.getProperty("docLengthDeviation") != null) {
+			options.setDocLengthDeviation(Double.parseDouble(properties.getProperty("docLengthDeviation").trim()));
+		}
+		if (properties.getProperty("vocabularySize") != null) {
+			options.setVocabularySize(Integer.parseInt(properties.getProperty("vocabularySize").trim()));
+		}
+		if (properties.getProperty("zipfExponent") != null) {
+			options.setZipfExponent(Double.parseDouble(properties.getProperty("zipfExponent").trim()));
+		}
+		if (properties.getProperty("seed") != null) {
+			options.setSeed(Long.parseLong(properties.getProperty("seed").trim()));
+		}
+		return options;
+	}
+
+}
@@ -46,10 +46,20 @@ public class IndexOptionsFactory {
 			}
 			options.setIndexFields(fields);
 		}
+		options.setIndexBigrams(Boolean.valueOf(properties.getProperty("indexBigrams")));
+		options.setStoreDocumentVectors(Boolean.valueOf(properties.getProperty("storeDocumentVectors")));
 		options.setIndexName(properties.getProperty("indexName"));
 		options.setStemmer(properties.getProperty("stemmer"));
 		options.setRemoveStopwords(Boolean.valueOf(properties.getProperty("removeStopwords")));
 		options.setIgnoreCase(Boolean.valueOf(properties.getProperty("ignoreCase")));
+		if (properties.getProperty("parserThreads") != null) {
+			options.setParserThreads(Integer.parseInt(properties.getProperty("parserThreads").trim()));
+		}
+		if (properties.getProperty("writerThreads") != null) {
+			options.setWriterThreads(Integer.parseInt(properties.getProperty("writerThreads").trim()));
+		}
+		options.setShardIndex(Boolean.valueOf(properties.getProperty("shardIndex")));
+		options.setKeepShards(Boolean.valueOf(properties.getProperty("keepShards")));
 		options.setHost(properties.getProperty("host"));
 		options.setPort(properties.getProperty("port"));
 		return options;
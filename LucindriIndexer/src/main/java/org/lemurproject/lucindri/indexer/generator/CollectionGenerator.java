@@ -0,0 +1,380 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer.generator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.GZIPOutputStream;
+
+import org.lemurproject.lucindri.indexer.domain.GeneratorConfiguration;
+
+/**
+ * Writes a synthetic collection in the input layout of one of the document
+ * parsers, so that indexing can be tested and benchmarked without the licensed
+ * collections. The words are spelled with syllables from their frequency rank
+ * and drawn with Zipf distributed frequencies. Document lengths are fixed,
+ * uniform or log-normal around the configured average, and the web formats
+ * wrap the words in HTML pages with a title, headings, paragraphs and links.
+ * The same configuration and seed always give the same files.
+ *
+ * The file layouts are the ones the parsers read: gzipped WARC 0.18 (cw09),
+ * 1.0 (warc, cw12) and 1.1 (cw22) records after a warcinfo record, TREC tag
+ * files (wsj, gov2, indrigov2, trectext), JSON lines (json, wapo), one file per
+ * document (text), single TSV files (marco, marcofull) and a CBOR file of
+ * paragraphs (car).
+ */
+public class CollectionGenerator {
+
+	private final static String[] SYLLABLES = { "ba", "be", "bo", "da", "de", "di", "fa", "fo", "ga", "ge", "ka",
+			"ke", "ki", "ko", "la", "le", "li", "lo", "ma", "me", "mi", "mo", "na", "ne", "no", "pa", "pe", "pi",
+			"ra", "re", "ri", "ro", "sa", "se", "so", "ta", "te", "ti", "to", "va" };
+	private final static String CRLF = "\r\n";
+
+	private final GeneratorConfiguration options;
+	private final Path directory;
+	private final Random random;
+	private final double[] cumulativeFrequencies;
+
+	public CollectionGenerator(GeneratorConfiguration options) {
+		this.options = options;
+		this.directory = Paths.get(options.getDataDirectory());
+		this.random = new Random(options.getSeed());
+		int vocabularySize = options.getVocabularySize();
+		cumulativeFrequencies = new double[vocabularySize];
+		double sum = 0;
+		for (int rank = 1; rank <= vocabularySize; rank++) {
+			sum += 1.0 / Math.pow(rank, options.getZipfExponent());
+			cumulativeFrequencies[rank - 1] = sum;
+		}
+		for (int i = 0; i < vocabularySize; i++) {
+			cumulativeFrequencies[i] /= sum;
+		}
+	}
+
+	/**
+	 * Writes the collection into the data directory.
+	 *
+	 * @return the path to give the parser as its dataDirectory: the data
+	 *         directory, or the file of the formats that read a single file
+	 */
+	public Path generate() throws IOException {
+		Files.createDirectories(directory);
+		int numDocs = options.getNumDocuments();
+		switch (options.getDocumentFormat()) {
+		case "text":
+			for (int doc = 0; doc < numDocs; doc++) {
+				Files.write(directory.resolve("doc" + doc + ".txt"),
+						getText(nextDocLength()).getBytes(StandardCharsets.UTF_8));
+			}
+			return directory;
+		case "wsj":
+			writeFiles(".txt", this::writeWSJ);
+			return directory;
+		case "gov2":
+		case "indrigov2":
+			writeFiles(".txt", this::writeGov2);
+			return directory;
+		case "trectext":
+			writeFiles(".txt", this::writeTrecText);
+			return directory;
+		case "json":
+			writeFiles(".json", this::writeJson);
+			return directory;
+		case "wapo":
+			writeFiles(".jl", this::writeWashingtonPost);
+			return directory;
+		case "cw09":
+			writeWARCFiles("WARC/0.18", "conformsTo: http://www.archive.org/documents/WarcFileFormat-0.18.html",
+					"clueweb09-en");
+			return directory;
+		case "warc":
+		case "cw12":
+			writeWARCFiles("WARC/1.0", "description: Lucindri synthetic collection", "clueweb12-");
+			return directory;
+		case "cw22":
+			writeWARCFiles("WARC/1.1", "description: Lucindri synthetic collection", "clueweb22-en");
+			return directory;
+		case "marco":
+			Path passages = directory.resolve("collection.tsv");
+			try (Writer writer = Files.newBufferedWriter(passages, StandardCharsets.UTF_8)) {
+				for (int doc = 0; doc < numDocs; doc++) {
+					writer.write(doc + "\t" + getText(nextDocLength()) + "\n");
+				}
+			}
+			return passages;
+		case "marcofull":
+			Path documents = directory.resolve("msmarco-docs.tsv");
+			try (Writer writer = Files.newBufferedWriter(documents, StandardCharsets.UTF_8)) {
+				for (int doc = 0; doc < numDocs; doc++) {
+					writer.write(String.join("\t", "D" + doc, getUrl(doc), getText(4, 12),
+							getText(nextDocLength())) + "\n");
+				}
+			}
+			return documents;
+		case "car":
+			Path paragraphs = directory.resolve("paragraphs.cbor");
+			try (OutputStream out = Files.newOutputStream(paragraphs)) {
+				for (int doc = 0; doc < numDocs; doc++) {
+					writeCARParagraph(out, String.format("%040x", doc), getText(nextDocLength()));
+				}
+			}
+			return paragraphs;
+		default:
+			throw new IllegalArgumentException(
+					"No synthetic layout for document format: " + options.getDocumentFormat());
+		}
+	}
+
+	private interface RecordWriter {
+		void write(Writer writer, int doc) throws IOException;
+	}
+
+	/** Writes the documents into text files of documentsPerFile documents. */
+	private void writeFiles(String suffix, RecordWriter recordWriter) throws IOException {
+		int numDocs = options.getNumDocuments();
+		int documentsPerFile = options.getDocumentsPerFile();
+		for (int start = 0; start < numDocs; start += documentsPerFile) {
+			Path file = directory.resolve(String.format("%04d%s", start / documentsPerFile, suffix));
+			try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+				for (int doc = start; doc < Math.min(numDocs, start + documentsPerFile); doc++) {
+					recordWriter.write(writer, doc);
+				}
+			}
+		}
+	}
+
+	private void writeWSJ(Writer writer, int doc) throws IOException {
+		writer.write("<DOC>\n");
+		writer.write("<DOCNO> WSJ870324-" + doc + " </DOCNO>\n");
+		writer.write("<DOCID> 870324-" + doc + ". </DOCID>\n");
+		writer.write("<HL> " + getText(4, 12) + " </HL>\n");
+		writer.write("<DD> 03/24/87 </DD>\n");
+		writer.write("<SO> WALL STREET JOURNAL (J) </SO>\n");
+		writer.write("<IN> " + getText(1, 4) + " </IN>\n");
+		writer.write("<LP> " + getText(15, 45) + " </LP>\n");
+		writer.write("<TEXT>\n" + getText(nextDocLength()) + "\n</TEXT>\n");
+		writer.write("</DOC>\n");
+	}
+
+	private void writeGov2(Writer writer, int doc) throws IOException {
+		writer.write("<DOC>\n");
+		writer.write("<DOCNO>GX000-" + String.format("%02d-%07d", doc / 10000, doc) + "</DOCNO>\n");
+		writer.write("<DOCHDR>\n");
+		writer.write(getUrl(doc) + "\n");
+		writer.write("HTTP/1.1 200 OK\n");
+		writer.write("Date: Tue, 09 Dec 2003 21:39:35 GMT\n");
+		writer.write("Content-Type: text/html\n");
+		writer.write("</DOCHDR>\n");
+		writer.write(getHtml(doc));
+		writer.write("</DOC>\n");
+	}
+
+	private void writeTrecText(Writer writer, int doc) throws IOException {
+		writer.write("<DOC>\n");
+		writer.write("<DOCNO>" + doc + "</DOCNO>\n");
+		writer.write("<TEXT>\n" + getText(nextDocLength()) + "\n</TEXT>\n");
+		writer.write("</DOC>\n");
+	}
+
+	private void writeJson(Writer writer, int doc) throws IOException {
+		// Field offsets are token positions, so the title is the first titleLength words
+		int titleLength = 4 + random.nextInt(9);
+		String text = getText(titleLength) + " " + getText(nextDocLength());
+		writer.write("{\"docno\":\"" + doc + "\",\"text\":\"" + text + "\",\"fields\":[{\"name\":\"title\","
+				+ "\"start\":0,\"end\":" + titleLength + "}]}\n");
+	}
+
+	private void writeWashingtonPost(Writer writer, int doc) throws IOException {
+		writer.write("{\"id\":\"" + String.format("%032x", doc) + "\",\"article_url\":\"" + getUrl(doc)
+				+ "\",\"title\":\"" + getText(4, 12) + "\",\"contents\":[");
+		int remaining = nextDocLength();
+		for (int paragraph = 0; remaining > 0; paragraph++) {
+			int length = Math.min(remaining, 20 + random.nextInt(80));
+			writer.write((paragraph > 0 ? "," : "") + "{\"content\":\"" + getText(length, length) + "\"}");
+			remaining -= length;
+		}
+		writer.write("]}\n");
+	}
+
+	/**
+	 * Writes gzipped WARC files of documentsPerFile response records, each file
+	 * starting with a warcinfo record whose last line is {@code infoEnd}.
+	 */
+	private void writeWARCFiles(String version, String infoEnd, String idPrefix) throws IOException {
+		int numDocs = options.getNumDocuments();
+		int documentsPerFile = options.getDocumentsPerFile();
+		for (int start = 0; start < numDocs; start += documentsPerFile) {
+			int file = start / documentsPerFile;
+			Path path = directory.resolve(String.format("%02d.warc.gz", file));
+			try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(path), 65536)) {
+				String info = "software: Lucindri CollectionGenerator" + CRLF + "format: " + version + CRLF + infoEnd
+						+ CRLF;
+				writeWARCRecord(out, version,
+						"WARC-Type: warcinfo" + CRLF + "WARC-Date: 2009-01-13T18:05:10-0800" + CRLF
+								+ "WARC-Record-ID: <urn:uuid:" + getUUID(-1 - file) + ">" + CRLF
+								+ "Content-Type: application/warc-fields" + CRLF,
+						info.getBytes(StandardCharsets.UTF_8));
+				for (int doc = start; doc < Math.min(numDocs, start + documentsPerFile); doc++) {
+					byte[] html = getHtml(doc).getBytes(StandardCharsets.UTF_8);
+					ByteArrayOutputStream block = new ByteArrayOutputStream(html.length + 256);
+					block.write(("HTTP/1.1 200 OK" + CRLF + "Content-Type: text/html" + CRLF
+							+ "Date: Tue, 13 Jan 2009 18:05:10 GMT" + CRLF + "Server: Apache" + CRLF
+							+ "Content-Length: " + html.length + CRLF + CRLF).getBytes(StandardCharsets.UTF_8));
+					block.write(html);
+					String trecID = String.format("%s%04d-%02d-%05d", idPrefix, file / 100, file % 100,
+							doc - start);
+					writeWARCRecord(out, version,
+							"WARC-Type: response" + CRLF + "WARC-Target-URI: " + getUrl(doc) + CRLF
+									+ "WARC-Date: 2009-01-13T18:05:10-0800" + CRLF + "WARC-TREC-ID: " + trecID + CRLF
+									+ "WARC-Record-ID: <urn:uuid:" + getUUID(doc) + ">" + CRLF
+									+ "Content-Type: application/http;msgtype=response" + CRLF,
+							block.toByteArray());
+				}
+			}
+		}
+	}
+
+	private static void writeWARCRecord(OutputStream out, String version, String headers, byte[] block)
+			throws IOException {
+		out.write((version + CRLF + headers + "Content-Length: " + block.length + CRLF + CRLF)
+				.getBytes(StandardCharsets.UTF_8));
+		out.write(block);
+		out.write((CRLF + CRLF).getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes a TREC CAR paragraph, the CBOR array [0, id, [[0, text]]] of a
+	 * paragraph tag, its id as a byte string and one body of plain text.
+	 */
+	private static void writeCARParagraph(OutputStream out, String id, String text) throws IOException {
+		writeCBORHead(out, 4, 3);
+		writeCBORHead(out, 0, 0);
+		byte[] idBytes = id.getBytes(StandardCharsets.UTF_8);
+		writeCBORHead(out, 2, idBytes.length);
+		out.write(idBytes);
+		writeCBORHead(out, 4, 1);
+		writeCBORHead(out, 4, 2);
+		writeCBORHead(out, 0, 0);
+		byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+		writeCBORHead(out, 3, textBytes.length);
+		out.write(textBytes);
+	}
+
+	/** Writes the head of a CBOR data item of a major type. */
+	private static void writeCBORHead(OutputStream out, int majorType, long value) throws IOException {
+		int type = majorType << 5;
+		if (value < 24) {
+			out.write(type | (int) value);
+		} else if (value < 1 << 8) {
+			out.write(type | 24);
+			out.write((int) value);
+		} else if (value < 1 << 16) {
+			out.write(type | 25);
+			out.write((int) (value >> 8));
+			out.write((int) value);
+		} else {
+			out.write(type | 26);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				out.write((int) (value >> shift));
+			}
+		}
+	}
+
+	private String getHtml(int doc) {
+		StringBuilder html = new StringBuilder();
+		html.append("<!DOCTYPE html>\n<html>\n<head>\n<meta charset=\"utf-8\">\n<title>").append(getText(4, 12))
+				.append("</title>\n</head>\n<body>\n<h1>").append(getText(2, 8)).append("</h1>\n");
+		int remaining = nextDocLength();
+		while (remaining > 0) {
+			if (random.nextInt(4) == 0) {
+				html.append("<h2>").append(getText(2, 6)).append("</h2>\n");
+			}
+			int length = Math.min(remaining, 20 + random.nextInt(80));
+			html.append("<p>").append(getText(length, length)).append(" <a href=\"")
+					.append(getUrl(random.nextInt(options.getNumDocuments()))).append("\">").append(getText(1, 4))
+					.append("</a></p>\n");
+			remaining -= length;
+		}
+		html.append("</body>\n</html>\n");
+		return html.toString();
+	}
+
+	private static String getUrl(int doc) {
+		return "http://www.example" + doc % 1000 + ".com/page/" + doc + ".html";
+	}
+
+	private static String getUUID(long doc) {
+		return String.format("%08x-0000-4000-8000-%012x", doc >>> 32 & 0xffffffffL, doc & 0xffffffffffffL);
+	}
+
+	/** Draws the number of words of a document from the length distribution. */
+	private int nextDocLength() {
+		int docLength = options.getDocLength();
+		double deviation = options.getDocLengthDeviation();
+		switch (options.getDocLengthDistribution()) {
+		case "fixed":
+			return docLength;
+		case "uniform":
+			// Uniform between (1 - deviation) and (1 + deviation) times the average
+			int min = (int) Math.max(1, Math.round(docLength * (1 - deviation)));
+			int max = (int) Math.round(docLength * (1 + deviation));
+			return min + random.nextInt(Math.max(1, max - min + 1));
+		case "lognormal":
+			// The log of the length is normal with standard deviation deviation, and
+			// its mean is chosen so that the average length is docLength
+			double mu = Math.log(docLength) - deviation * deviation / 2;
+			return (int) Math.max(1, Math.round(Math.exp(mu + deviation * random.nextGaussian())));
+		default:
+			throw new IllegalArgumentException(
+					"Unknown document length distribution: " + options.getDocLengthDistribution());
+		}
+	}
+
+	private String getText(int length) {
+		return getText(length, length);
+	}
+
+	/** Returns between {@code minLength} and {@code maxLength} random words. */
+	private String getText(int minLength, int maxLength) {
+		int length = minLength + random.nextInt(maxLength - minLength + 1);
+		StringBuilder text = new StringBuilder(length * 8);
+		for (int i = 0; i < length; i++) {
+			if (i > 0) {
+				text.append(' ');
+			}
+			appendWord(text, sampleRank());
+		}
+		return text.toString();
+	}
+
+	/** Appends the word of a frequency rank, which spells the rank with syllables. */
+	private static void appendWord(StringBuilder text, int rank) {
+		do {
+			text.append(SYLLABLES[rank % SYLLABLES.length]);
+			rank /= SYLLABLES.length;
+		} while (rank > 0);
+	}
+
+	private int sampleRank() {
+		int index = Arrays.binarySearch(cumulativeFrequencies, random.nextDouble());
+		return index >= 0 ? index : -index - 1;
+	}
+
+}
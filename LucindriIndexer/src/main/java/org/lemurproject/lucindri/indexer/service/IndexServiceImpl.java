@@ -18,22 +18,38 @@ import java.nio.file.Paths;
 import java.time.LocalTime;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.apache.commons.lang3.SerializationUtils;
 import org.lemurproject.lucindri.indexer.documentparser.DocumentParser;
 import org.lemurproject.lucindri.indexer.documentwriter.DocumentWriter;
 import org.lemurproject.lucindri.indexer.documentwriter.LuceneDocumentWriter;
 import org.lemurproject.lucindri.indexer.documentwriter.SolrDocumentWriter;
 import org.lemurproject.lucindri.indexer.domain.IndexingConfiguration;
 import org.lemurproject.lucindri.indexer.domain.ParsedDocument;
+import org.lemurproject.lucindri.indexer.domain.ParsedDocumentField;
 import org.lemurproject.lucindri.indexer.factory.DocumentParserFactory;
+import org.lemurproject.lucindri.indexer.service.InputFileScheduler.InputFile;
 import org.xml.sax.SAXException;
 
 public class IndexServiceImpl implements IndexService {
 
 	private static final Logger logger = Logger.getLogger(IndexServiceImpl.class.getName());
 
+	// Documents the queue between the parse and write stages holds per writer thread
+	private static final int QUEUE_DOCUMENTS_PER_THREAD = 64;
+	// Marks the end of the documents in the queue, once for every writer thread
+	private static final ParsedDocument END_OF_DOCUMENTS = new ParsedDocument();
+
 	@Override
 	public void buildIndex(IndexingConfiguration indexingConfig) throws IOException, InstantiationException,
 			IllegalAccessException, IllegalArgumentException, InvocationTargetException, NoSuchMethodException,
@@ -42,7 +58,11 @@ public class IndexServiceImpl implements IndexService {
 		long startTime = System.currentTimeMillis();
 
 		DocumentParserFactory docParserFactory = new DocumentParserFactory();
-		DocumentParser docParser = docParserFactory.getDocumentParser(indexingConfig);
+		// Parser threads open a parser for every input file instead
+		DocumentParser docParser = null;
+		if (indexingConfig.getParserThreads() <= 1) {
+			docParser = docParserFactory.getDocumentParser(indexingConfig);
+		}
 
 		List<DocumentWriter> docWriters = new ArrayList<>();
 
@@ -60,25 +80,25 @@ public class IndexServiceImpl implements IndexService {
 
 		// Parse documents and add annotations
 		System.out.println("Indexing started...");
-		int docCount = 0;
-		ParsedDocument parsedDoc;
-		long endTime = System.currentTimeMillis();
-		long elapsedTime = (endTime - startTime) / 1000;
-		while (docParser.hasNextDocument()) {
-			parsedDoc = docParser.getNextDocument();
-			if (parsedDoc != null) {
-				docCount++;
-				for (DocumentWriter writer : docWriters) {
-					writer.writeDocuments(parsedDoc);
-				}
-				if (docCount % 1000 == 0) {
-					endTime = System.currentTimeMillis();
-					elapsedTime = (endTime - startTime) / 1000;
-					System.out.println(LocalTime.MIN.plusSeconds(elapsedTime).toString() + ": " + docCount
-							+ " documents indexed...");
+		int docCount;
+		if (indexingConfig.getParserThreads() > 1 || indexingConfig.getWriterThreads() > 1) {
+			docCount = indexPipelined(indexingConfig, docParserFactory, docParser, docWriters, startTime);
+		} else {
+			docCount = 0;
+			ParsedDocument parsedDoc;
+			while (docParser.hasNextDocument()) {
+				parsedDoc = docParser.getNextDocument();
+				if (parsedDoc != null) {
+					docCount++;
+					for (DocumentWriter writer : docWriters) {
+						writer.writeDocuments(parsedDoc);
+					}
+					if (docCount % 1000 == 0) {
+						printProgress(docCount, startTime);
+					}
 				}
-			}
 
+			}
 		}
 
 		for (DocumentWriter writer : docWriters) {
@@ -87,12 +107,141 @@ public class IndexServiceImpl implements IndexService {
 
 		System.out.println("INDEX COMPLETE: " + docCount + " documents indexed");
 
-		endTime = System.currentTimeMillis();
-		elapsedTime = (endTime - startTime) / 1000;
+		long endTime = System.currentTimeMillis();
+		long elapsedTime = (endTime - startTime) / 1000;
 
 		System.out.println("Indexing time: " + LocalTime.MIN.plusSeconds(elapsedTime).toString());
 		logger.log(Level.INFO, "Lucene Indexing time: " + LocalTime.MIN.plusSeconds(elapsedTime).toString());
 		logger.log(Level.FINE, "Exit");
 	}
 
+	/**
+	 * Indexes in two stages connected by a bounded queue: parser threads fill the
+	 * queue and writerThreads threads take documents from it and write them, so
+	 * that the analysis and indexing of the documents runs on several cores of
+	 * the shared IndexWriter, or of one IndexWriter per thread if shardIndex is
+	 * set. The parsers wait while the queue is full. Documents are not added to
+	 * the index in the order they are parsed.
+	 * 
+	 * With a single parser thread, docParser parses the whole collection. With
+	 * parserThreads threads, every thread takes input files from an
+	 * {@link InputFileScheduler} and opens a parser for each, and the internalId
+	 * of a document is the number of its file in path order and its number in the
+	 * file, such as 12-345, whatever thread parsed it.
+	 * 
+	 * @return the number of documents indexed
+	 */
+	private int indexPipelined(IndexingConfiguration indexingConfig, DocumentParserFactory docParserFactory,
+			DocumentParser docParser, List<DocumentWriter> docWriters, long startTime)
+			throws IOException, SAXException {
+		int parserThreads = docParser == null ? indexingConfig.getParserThreads() : 1;
+		int writerThreads = Math.max(1, indexingConfig.getWriterThreads());
+		BlockingQueue<ParsedDocument> queue = new ArrayBlockingQueue<>(writerThreads * QUEUE_DOCUMENTS_PER_THREAD);
+		AtomicInteger docCount = new AtomicInteger();
+		AtomicInteger runningParsers = new AtomicInteger(parserThreads);
+		ExecutorService executor = Executors.newFixedThreadPool(parserThreads + writerThreads);
+		CompletionService<Void> stages = new ExecutorCompletionService<>(executor);
+
+		// Parse stage
+		InputFileScheduler scheduler = docParser == null ? new InputFileScheduler(indexingConfig.getDataDirectory(),
+				docParserFactory.readsSubdirectories(indexingConfig.getDocumentFormat())) : null;
+		for (int i = 0; i < parserThreads; i++) {
+			stages.submit(() -> {
+				try {
+					if (scheduler == null) {
+						while (docParser.hasNextDocument()) {
+							ParsedDocument parsedDoc = docParser.getNextDocument();
+							if (parsedDoc != null) {
+								queue.put(parsedDoc);
+							}
+						}
+					} else {
+						InputFile inputFile;
+						while ((inputFile = scheduler.next()) != null) {
+							IndexingConfiguration fileConfig = SerializationUtils.clone(indexingConfig);
+							fileConfig.setDataDirectory(inputFile.getFile().getPath());
+							DocumentParser fileParser = docParserFactory.getDocumentParser(fileConfig);
+							int fileDocNum = 0;
+							while (fileParser.hasNextDocument()) {
+								ParsedDocument parsedDoc = fileParser.getNextDocument();
+								if (parsedDoc != null) {
+									// Parsers count documents per file, so the file number is part of the id
+									setInternalId(parsedDoc, inputFile.getFileNumber() + "-" + fileDocNum);
+									fileDocNum++;
+									queue.put(parsedDoc);
+								}
+							}
+						}
+					}
+				} finally {
+					// The last parser to finish ends the write stage
+					if (runningParsers.decrementAndGet() == 0) {
+						for (int j = 0; j < writerThreads; j++) {
+							queue.put(END_OF_DOCUMENTS);
+						}
+					}
+				}
+				return null;
+			});
+		}
+
+		// Write stage
+		for (int i = 0; i < writerThreads; i++) {
+			stages.submit(() -> {
+				ParsedDocument parsedDoc;
+				while ((parsedDoc = queue.take()) != END_OF_DOCUMENTS) {
+					for (DocumentWriter writer : docWriters) {
+						writer.writeDocuments(parsedDoc);
+					}
+					int count = docCount.incrementAndGet();
+					if (count % 1000 == 0) {
+						printProgress(count, startTime);
+					}
+				}
+				return null;
+			});
+		}
+
+		// The first stage to fail stops the others
+		try {
+			for (int i = 0; i < parserThreads + writerThreads; i++) {
+				stages.take().get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Indexing interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException) cause;
+			} else if (cause instanceof SAXException) {
+				throw (SAXException) cause;
+			} else if (cause instanceof RuntimeException) {
+				throw (RuntimeException) cause;
+			} else if (cause instanceof Error) {
+				throw (Error) cause;
+			}
+			throw new IOException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+		return docCount.get();
+	}
+
+	private static void setInternalId(ParsedDocument parsedDoc, String internalId) {
+		for (ParsedDocumentField docField : parsedDoc.getDocumentFields()) {
+			if (docField.getFieldName().equals(DocumentParser.INTERNALID_FIELD)) {
+				docField.setContent(internalId);
+				return;
+			}
+		}
+		parsedDoc.getDocumentFields().add(new ParsedDocumentField(DocumentParser.INTERNALID_FIELD, internalId, false));
+	}
+
+	private static void printProgress(int docCount, long startTime) {
+		long elapsedTime = (System.currentTimeMillis() - startTime) / 1000;
+		System.out.println(LocalTime.MIN.plusSeconds(elapsedTime).toString() + ": " + docCount
+				+ " documents indexed...");
+	}
+
 }
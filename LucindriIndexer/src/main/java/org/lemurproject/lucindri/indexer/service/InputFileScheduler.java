@@ -0,0 +1,76 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer.service;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+import org.lemurproject.lucindri.indexer.documentparser.DocumentParser;
+
+/**
+ * Hands out the input files of a collection to parser threads, largest file
+ * first. Every thread takes the next file when it has parsed its last one, so
+ * a thread that drew a large file parses fewer of the rest, and the threads
+ * finish at about the same time however the bytes are spread over the files.
+ * Files keep the number of their place in path order, which does not depend on
+ * the number of threads or on which thread parses them.
+ */
+public class InputFileScheduler {
+
+	/** An input file and its number in path order. */
+	public static class InputFile {
+
+		private final File file;
+		private final int fileNumber;
+
+		private InputFile(File file, int fileNumber) {
+			this.file = file;
+			this.fileNumber = fileNumber;
+		}
+
+		public File getFile() {
+			return file;
+		}
+
+		public int getFileNumber() {
+			return fileNumber;
+		}
+
+	}
+
+	private final List<InputFile> inputFiles;
+	private int next;
+
+	public InputFileScheduler(String dataDirectory, boolean subdirectories) throws IOException {
+		List<File> files = subdirectories ? DocumentParser.listInputFiles(dataDirectory)
+				: DocumentParser.listTopLevelInputFiles(dataDirectory);
+		inputFiles = new ArrayList<>(files.size());
+		for (int i = 0; i < files.size(); i++) {
+			inputFiles.add(new InputFile(files.get(i), i));
+		}
+		// Stable, so files of the same size stay in path order
+		inputFiles.sort(Comparator.comparingLong((InputFile inputFile) -> inputFile.getFile().length()).reversed());
+	}
+
+	/** Returns the next file to parse, or null when every file has been handed out. */
+	public synchronized InputFile next() {
+		return next < inputFiles.size() ? inputFiles.get(next++) : null;
+	}
+
+	public int size() {
+		return inputFiles.size();
+	}
+
+}
@@ -0,0 +1,233 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2017 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.indexer.service;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.MultiTerms;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lemurproject.lucindri.indexer.domain.GeneratorConfiguration;
+import org.lemurproject.lucindri.indexer.domain.IndexingConfiguration;
+import org.lemurproject.lucindri.indexer.generator.CollectionGenerator;
+import org.lemurproject.lucindri.searcher.domain.IndriConstants;
+
+/**
+ * Checks that indexing with parser threads, writer threads and shards gives
+ * the index of a sequential build of a generated collection: the same
+ * documents with the same lengths, the same term statistics and the same field
+ * statistics in the commit. Documents are compared by external id, as their
+ * order in the index depends on the threads. The internalId field is left out:
+ * with parser threads it holds "file-doc" instead of a document number.
+ */
+public class IndexServiceImplTest {
+
+	private final static String EXTERNALID_FIELD = "externalId";
+	private final static String INTERNALID_FIELD = "internalId";
+	private final static String SHARD_DIRECTORY_PREFIX = "shard-";
+
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	private static String dataDirectory;
+	private static IndexSummary sequential;
+
+	@BeforeClass
+	public static void buildSequentialIndex() throws Exception {
+		GeneratorConfiguration options = new GeneratorConfiguration();
+		options.setDocumentFormat("trectext");
+		options.setDataDirectory(folder.newFolder("data").getPath());
+		options.setNumDocuments(2000);
+		options.setDocumentsPerFile(150);
+		options.setDocLength(100);
+		options.setVocabularySize(2000);
+		dataDirectory = new CollectionGenerator(options).generate().toString();
+
+		sequential = buildIndex("sequential", 1, 1, false, false);
+		assertEquals(2000, sequential.numDocs);
+	}
+
+	private static IndexSummary buildIndex(String indexName, int parserThreads, int writerThreads,
+			boolean shardIndex, boolean keepShards) throws Exception {
+		IndexingConfiguration config = new IndexingConfiguration();
+		config.setIndexPlatform("lucene");
+		config.setDocumentFormat("trectext");
+		config.setDataDirectory(dataDirectory);
+		config.setIndexDirectory(folder.getRoot().getPath());
+		config.setIndexName(indexName);
+		config.setIndexFullText(true);
+		config.setIndexFields(Arrays.asList("text"));
+		config.setStemmer("kstem");
+		config.setRemoveStopwords(true);
+		config.setIgnoreCase(true);
+		config.setParserThreads(parserThreads);
+		config.setWriterThreads(writerThreads);
+		config.setShardIndex(shardIndex);
+		config.setKeepShards(keepShards);
+		new IndexServiceImpl().buildIndex(config);
+
+		Path indexPath = folder.getRoot().toPath().resolve(indexName);
+		List<Path> shardPaths;
+		try (Stream<Path> paths = Files.list(indexPath)) {
+			shardPaths = paths.filter(path -> path.getFileName().toString().startsWith(SHARD_DIRECTORY_PREFIX))
+					.sorted().collect(Collectors.toList());
+		}
+		assertEquals(keepShards, !shardPaths.isEmpty());
+		if (!keepShards) {
+			shardPaths = Arrays.asList(indexPath);
+		}
+		List<DirectoryReader> readers = new ArrayList<>();
+		for (Path shardPath : shardPaths) {
+			readers.add(DirectoryReader.open(FSDirectory.open(shardPath)));
+		}
+		try (IndexReader reader = new MultiReader(readers.toArray(new IndexReader[0]), true)) {
+			return new IndexSummary(reader, readers);
+		}
+	}
+
+	/** What the searcher reads from an index, by external id and term. */
+	private static class IndexSummary {
+		final int numDocs;
+		// Value of every numeric doc values field, such as the exact lengths, by external id
+		final Map<String, Map<String, Long>> docValues = new HashMap<>();
+		// "docFreq,totalTermFreq" by field and term
+		final Map<String, String> termStatistics = new TreeMap<>();
+		// Sums of the commit statistics of the shards, by field
+		final Map<String, List<Long>> fieldStatistics = new TreeMap<>();
+
+		IndexSummary(IndexReader reader, List<DirectoryReader> shards) throws IOException {
+			numDocs = reader.numDocs();
+			for (LeafReaderContext leaf : reader.leaves()) {
+				addDocValues(leaf);
+			}
+			for (FieldInfo fieldInfo : FieldInfos.getMergedFieldInfos(reader)) {
+				if (fieldInfo.getIndexOptions() != IndexOptions.NONE && !fieldInfo.name.equals(INTERNALID_FIELD)) {
+					addTermStatistics(reader, fieldInfo.name);
+				}
+			}
+			for (DirectoryReader shard : shards) {
+				Map<String, String> userData = shard.getIndexCommit().getUserData();
+				// The statistics are those of the last commit, which the searcher checks
+				assertEquals(Long.toString(shard.getIndexCommit().getGeneration()),
+						userData.get(IndriConstants.COMMIT_GENERATION));
+				String prefix = IndriConstants.COMMIT_FIELD_STATISTICS_PREFIX;
+				for (Map.Entry<String, String> entry : userData.entrySet()) {
+					if (entry.getKey().startsWith(prefix) && !entry.getKey().equals(prefix + INTERNALID_FIELD)) {
+						String field = entry.getKey().substring(prefix.length());
+						String[] values = entry.getValue().split(",");
+						List<Long> sums = fieldStatistics.computeIfAbsent(field, f -> Arrays.asList(0L, 0L, 0L));
+						for (int i = 0; i < values.length; i++) {
+							sums.set(i, sums.get(i) + Long.parseLong(values[i]));
+						}
+					}
+				}
+			}
+		}
+
+		private void addDocValues(LeafReaderContext leaf) throws IOException {
+			SortedDocValues externalIds = leaf.reader().getSortedDocValues(EXTERNALID_FIELD);
+			Map<String, NumericDocValues> numericDocValues = new HashMap<>();
+			for (FieldInfo fieldInfo : leaf.reader().getFieldInfos()) {
+				if (fieldInfo.getDocValuesType() == DocValuesType.NUMERIC) {
+					numericDocValues.put(fieldInfo.name, leaf.reader().getNumericDocValues(fieldInfo.name));
+				}
+			}
+			for (int doc = 0; doc < leaf.reader().maxDoc(); doc++) {
+				assertTrue(externalIds.advanceExact(doc));
+				Map<String, Long> values = new HashMap<>();
+				for (Map.Entry<String, NumericDocValues> field : numericDocValues.entrySet()) {
+					if (field.getValue().advanceExact(doc)) {
+						values.put(field.getKey(), field.getValue().longValue());
+					}
+				}
+				String externalId = externalIds.lookupOrd(externalIds.ordValue()).utf8ToString();
+				assertFalse(externalId, docValues.containsKey(externalId));
+				docValues.put(externalId, values);
+			}
+		}
+
+		private void addTermStatistics(IndexReader reader, String field) throws IOException {
+			Terms terms = MultiTerms.getTerms(reader, field);
+			if (terms == null) {
+				return;
+			}
+			TermsEnum termsEnum = terms.iterator();
+			BytesRef term;
+			while ((term = termsEnum.next()) != null) {
+				termStatistics.put(field + ":" + term.utf8ToString(),
+						termsEnum.docFreq() + "," + termsEnum.totalTermFreq());
+			}
+		}
+	}
+
+	private static void assertSameIndex(IndexSummary summary) {
+		assertEquals(sequential.numDocs, summary.numDocs);
+		assertEquals(sequential.docValues, summary.docValues);
+		assertEquals(sequential.termStatistics, summary.termStatistics);
+		assertFalse(sequential.fieldStatistics.isEmpty());
+		assertEquals(sequential.fieldStatistics, summary.fieldStatistics);
+	}
+
+	@Test
+	public void testParserThreads() throws Exception {
+		assertSameIndex(buildIndex("parsers", 3, 1, false, false));
+	}
+
+	@Test
+	public void testWriterThreads() throws Exception {
+		assertSameIndex(buildIndex("writers", 1, 3, false, false));
+	}
+
+	@Test
+	public void testMergedShards() throws Exception {
+		assertSameIndex(buildIndex("merged-shards", 2, 3, true, false));
+	}
+
+	@Test
+	public void testKeptShards() throws Exception {
+		IndexSummary summary = buildIndex("kept-shards", 2, 3, true, true);
+		assertSameIndex(summary);
+		assertTrue(new File(folder.getRoot(), "kept-shards/" + SHARD_DIRECTORY_PREFIX + "2").isDirectory());
+	}
+
+}
@@ -0,0 +1,90 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher.benchmark;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Generates Indri queries of a given shape over the vocabulary of a
+ * {@link SyntheticIndex}. Query terms are drawn uniformly from the frequency
+ * ranks between {@link #MIN_RANK} and {@link #MAX_RANK}, which leaves out the
+ * few terms that occur in almost every document and the long tail of terms
+ * that occur in almost none. The shapes are:
+ * <ul>
+ * <li>term: a single term</li>
+ * <li>combine: #combine of three terms</li>
+ * <li>wsum: #wsum of three weighted terms</li>
+ * <li>od: ordered window #1 of two terms</li>
+ * <li>uw: unordered window #uw8 of two terms</li>
+ * <li>syn: #syn of three terms</li>
+ * <li>max: #max of three terms</li>
+ * <li>sdm: sequential dependence model of three terms, a #weight of their
+ * #combine, of the #1 and of the #uw8 of adjacent terms</li>
+ * </ul>
+ */
+public class BenchmarkQueries {
+
+	public final static int MIN_RANK = 10;
+	public final static int MAX_RANK = 1000;
+
+	private BenchmarkQueries() {
+	}
+
+	/** Returns {@code count} queries of a shape, generated from a seed. */
+	public static List<String> generate(String shape, int count, long seed) {
+		Random random = new Random(seed);
+		List<String> queries = new ArrayList<>(count);
+		for (int i = 0; i < count; i++) {
+			String a = nextTerm(random);
+			String b = nextTerm(random);
+			String c = nextTerm(random);
+			switch (shape) {
+			case "term":
+				queries.add(a);
+				break;
+			case "combine":
+				queries.add("#combine(" + a + " " + b + " " + c + ")");
+				break;
+			case "wsum":
+				queries.add("#wsum(0.5 " + a + " 0.3 " + b + " 0.2 " + c + ")");
+				break;
+			case "od":
+				queries.add("#1(" + a + " " + b + ")");
+				break;
+			case "uw":
+				queries.add("#uw8(" + a + " " + b + ")");
+				break;
+			case "syn":
+				queries.add("#syn(" + a + " " + b + " " + c + ")");
+				break;
+			case "max":
+				queries.add("#max(" + a + " " + b + " " + c + ")");
+				break;
+			case "sdm":
+				queries.add("#weight(0.85 #combine(" + a + " " + b + " " + c + ") 0.1 #combine(#1(" + a + " " + b
+						+ ") #1(" + b + " " + c + ")) 0.05 #combine(#uw8(" + a + " " + b + ") #uw8(" + b + " " + c
+						+ ")))");
+				break;
+			default:
+				throw new IllegalArgumentException("unknown query shape " + shape);
+			}
+		}
+		return queries;
+	}
+
+	private static String nextTerm(Random random) {
+		return SyntheticIndex.getTerm(MIN_RANK + random.nextInt(MAX_RANK - MIN_RANK + 1));
+	}
+
+}
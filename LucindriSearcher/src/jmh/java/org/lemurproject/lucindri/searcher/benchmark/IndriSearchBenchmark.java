@@ -0,0 +1,114 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.lemurproject.lucindri.searcher.IndriSearch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Time of a whole IndriSearch run over a {@link SyntheticIndex}: reading the
+ * parameter file, opening the index, parsing and running every query and
+ * writing the run file. The queries are generated with the shapes of
+ * {@link BenchmarkQueries}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class IndriSearchBenchmark {
+
+	private final static long SEED = 42;
+
+	@Param("50000")
+	public int numDocs;
+
+	@Param("300")
+	public int docLength;
+
+	@Param("50000")
+	public int vocabularySize;
+
+	@Param("1")
+	public int segments;
+
+	@Param({ "combine", "sdm" })
+	public String queryShape;
+
+	@Param("100")
+	public int numQueries;
+
+	@Param("1000")
+	public int count;
+
+	@Param("1")
+	public int threads;
+
+	private SyntheticIndex index;
+	private Path parametersFile;
+	private Path runFile;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		index = new SyntheticIndex(numDocs, docLength, vocabularySize, segments, SEED);
+		parametersFile = Files.createTempFile("lucindri-benchmark", ".xml");
+		runFile = Files.createTempFile("lucindri-benchmark", ".run");
+
+		StringBuilder parameters = new StringBuilder();
+		parameters.append("<parameters>\n");
+		parameters.append("<index>").append(index.getPath()).append("</index>\n");
+		parameters.append("<rule>dirichlet:2500</rule>\n");
+		parameters.append("<count>").append(count).append("</count>\n");
+		parameters.append("<threads>").append(threads).append("</threads>\n");
+		parameters.append("<runFile>").append(runFile).append("</runFile>\n");
+		List<String> queries = BenchmarkQueries.generate(queryShape, numQueries, SEED);
+		for (int i = 0; i < queries.size(); i++) {
+			parameters.append("<query><number>").append(i + 1).append("</number><text>").append(queries.get(i))
+					.append("</text></query>\n");
+		}
+		parameters.append("</parameters>\n");
+		Files.write(parametersFile, parameters.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		index.close();
+		Files.deleteIfExists(parametersFile);
+		Files.deleteIfExists(runFile);
+	}
+
+	@Benchmark
+	public void search() throws Exception {
+		IndriSearch.main(new String[] { parametersFile.toString() });
+	}
+
+}
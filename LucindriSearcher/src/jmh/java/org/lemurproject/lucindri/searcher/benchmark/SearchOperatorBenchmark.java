@@ -0,0 +1,165 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher.benchmark;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.lemurproject.lucindri.searcher.IndriIndexSearcher;
+import org.lemurproject.lucindri.searcher.IndriTermQuery;
+import org.lemurproject.lucindri.searcher.parser.IndriQueryParser;
+import org.lemurproject.lucindri.searcher.similarities.IndriDirichletSimilarity;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Throughput of the Lucindri query operators, in queries per second. Every
+ * benchmark runs a fixed set of generated queries of one operator against a
+ * {@link SyntheticIndex}, with Indri's Dirichlet smoothing and the searcher's
+ * caches off. Run with -prof gc to also measure allocation per query.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class SearchOperatorBenchmark {
+
+	private final static int NUM_QUERIES = 100;
+	private final static long SEED = 42;
+
+	@Param("50000")
+	public int numDocs;
+
+	@Param("300")
+	public int docLength;
+
+	@Param("50000")
+	public int vocabularySize;
+
+	@Param("1")
+	public int segments;
+
+	@Param("1000")
+	public int count;
+
+	private SyntheticIndex index;
+	private IndriIndexSearcher searcher;
+	private Query[] termQueries;
+	private Query[] wsumQueries;
+	private Query[] nearQueries;
+	private Query[] windowQueries;
+	private Query[] synonymQueries;
+	private Query[] maxQueries;
+
+	@Setup(Level.Trial)
+	public void setUp() throws IOException {
+		index = new SyntheticIndex(numDocs, docLength, vocabularySize, segments, SEED);
+		searcher = new IndriIndexSearcher(index.getReader());
+		searcher.setSimilarity(new IndriDirichletSimilarity());
+		// Every query would otherwise find its terms in the TermStates cache after
+		// the first iteration
+		searcher.setTermCacheSize(0);
+
+		List<String> terms = BenchmarkQueries.generate("term", NUM_QUERIES, SEED);
+		termQueries = new Query[terms.size()];
+		for (int i = 0; i < termQueries.length; i++) {
+			termQueries[i] = new IndriTermQuery(new Term(SyntheticIndex.FULLTEXT_FIELD, terms.get(i)));
+		}
+		wsumQueries = parse("wsum");
+		nearQueries = parse("od");
+		windowQueries = parse("uw");
+		synonymQueries = parse("syn");
+		maxQueries = parse("max");
+	}
+
+	private static Query[] parse(String shape) throws IOException {
+		IndriQueryParser queryParser = new IndriQueryParser();
+		List<String> queries = BenchmarkQueries.generate(shape, NUM_QUERIES, SEED);
+		Query[] parsedQueries = new Query[queries.size()];
+		for (int i = 0; i < parsedQueries.length; i++) {
+			parsedQueries[i] = queryParser.parseQuery(queries.get(i));
+		}
+		return parsedQueries;
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		index.close();
+	}
+
+	private void search(Query[] queries, Blackhole blackhole) throws IOException {
+		for (Query query : queries) {
+			blackhole.consume(searcher.search(query, count));
+		}
+	}
+
+	/** Single terms, scored by IndriTermScorer. */
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void term(Blackhole blackhole) throws IOException {
+		search(termQueries, blackhole);
+	}
+
+	/** #wsum, scored by IndriWeightedSumScorer. */
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void weightedSum(Blackhole blackhole) throws IOException {
+		search(wsumQueries, blackhole);
+	}
+
+	/** Ordered windows #1, weighted by IndriNearWeight. */
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void near(Blackhole blackhole) throws IOException {
+		search(nearQueries, blackhole);
+	}
+
+	/** Unordered windows #uw8, weighted by IndriWindowWeight. */
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void window(Blackhole blackhole) throws IOException {
+		search(windowQueries, blackhole);
+	}
+
+	/** #syn, weighted by IndriSynonymWeight. */
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void synonym(Blackhole blackhole) throws IOException {
+		search(synonymQueries, blackhole);
+	}
+
+	/** #max, scored by IndriMaxScorer. */
+	@Benchmark
+	@OperationsPerInvocation(NUM_QUERIES)
+	public void max(Blackhole blackhole) throws IOException {
+		search(maxQueries, blackhole);
+	}
+
+}
@@ -0,0 +1,213 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher.benchmark;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.IndexWriterConfig.OpenMode;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.search.similarities.LMDirichletSimilarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.lemurproject.lucindri.searcher.IndriSearch;
+import org.lemurproject.lucindri.searcher.domain.IndriConstants;
+
+/**
+ * Index of random documents for the benchmarks. Terms are drawn from a
+ * vocabulary of words t1, t2, ... with Zipf distributed frequencies, so the
+ * word of rank r is about r times less frequent than t1. The documents are
+ * generated from a fixed seed and written the way the Lucindri indexer writes
+ * them, with the exact length columns and the field statistics in the commit,
+ * so every build with the same parameters gives the same index.
+ */
+public class SyntheticIndex implements Closeable {
+
+	public final static String FULLTEXT_FIELD = "fulltext";
+	private final static String EXTERNALID_FIELD = "externalId";
+
+	private final Path path;
+	private final Directory directory;
+	private final DirectoryReader reader;
+	private final double[] cumulativeFrequencies;
+
+	/**
+	 * Builds an index of {@code numDocs} documents of {@code docLength} terms on
+	 * average in a new temporary directory.
+	 *
+	 * @param numDocs        number of documents
+	 * @param docLength      average number of terms in a document
+	 * @param vocabularySize number of distinct terms
+	 * @param segments       number of segments the index is merged into
+	 * @param seed           seed of the generated documents
+	 */
+	public SyntheticIndex(int numDocs, int docLength, int vocabularySize, int segments, long seed)
+			throws IOException {
+		cumulativeFrequencies = new double[vocabularySize];
+		double sum = 0;
+		for (int rank = 1; rank <= vocabularySize; rank++) {
+			sum += 1.0 / rank;
+			cumulativeFrequencies[rank - 1] = sum;
+		}
+		for (int i = 0; i < vocabularySize; i++) {
+			cumulativeFrequencies[i] /= sum;
+		}
+
+		path = Files.createTempDirectory("lucindri-benchmark");
+		directory = FSDirectory.open(path);
+		IndexWriterConfig config = new IndexWriterConfig(IndriSearch.getConfigurableAnalyzer());
+		config.setOpenMode(OpenMode.CREATE);
+		config.setSimilarity(new LMDirichletSimilarity());
+		config.setUseCompoundFile(false);
+		try (IndexWriter writer = new IndexWriter(directory, config)) {
+			FieldType fieldType = getFieldType();
+			Random random = new Random(seed);
+			StringBuilder text = new StringBuilder();
+			for (int doc = 0; doc < numDocs; doc++) {
+				// Lengths are uniform between half and one and a half times the average
+				int length = docLength / 2 + random.nextInt(docLength + 1);
+				text.setLength(0);
+				for (int i = 0; i < length; i++) {
+					if (i > 0) {
+						text.append(' ');
+					}
+					text.append(getTerm(sampleRank(random)));
+				}
+				String externalId = "doc" + doc;
+				Document luceneDoc = new Document();
+				luceneDoc.add(new Field(EXTERNALID_FIELD, externalId, fieldType));
+				luceneDoc.add(new SortedDocValuesField(EXTERNALID_FIELD, new BytesRef(externalId)));
+				luceneDoc.add(new Field(FULLTEXT_FIELD, text.toString(), fieldType));
+				luceneDoc.add(new NumericDocValuesField(FULLTEXT_FIELD + IndriConstants.FIELD_LENGTH_SUFFIX, length));
+				writer.addDocument(luceneDoc);
+			}
+			writer.forceMerge(segments);
+			writeFieldStatistics(writer);
+		}
+		reader = DirectoryReader.open(directory);
+	}
+
+	/**
+	 * Stores the collection statistics of the fields in the commit user data, as
+	 * the indexer's LuceneDocumentWriter does, so that the searcher reads them
+	 * instead of scanning the norms.
+	 */
+	private static void writeFieldStatistics(IndexWriter writer) throws IOException {
+		writer.commit();
+		Map<String, String> userData = new HashMap<>();
+		try (DirectoryReader committed = DirectoryReader.open(writer.getDirectory())) {
+			// The statistics are stored with the next commit, of closing the writer
+			userData.put(IndriConstants.COMMIT_GENERATION,
+					Long.toString(committed.getIndexCommit().getGeneration() + 1));
+			userData.put(IndriConstants.COMMIT_MAX_DOC, Integer.toString(committed.maxDoc()));
+			for (FieldInfo fieldInfo : FieldInfos.getMergedFieldInfos(committed)) {
+				if (fieldInfo.getIndexOptions() == IndexOptions.NONE) {
+					continue;
+				}
+				long docCount = 0;
+				long sumTotalTermFreq = 0;
+				long sumDocFreq = 0;
+				for (LeafReaderContext leaf : committed.leaves()) {
+					Terms terms = leaf.reader().terms(fieldInfo.name);
+					if (terms == null) {
+						continue;
+					}
+					docCount += terms.getDocCount();
+					sumTotalTermFreq += terms.getSumTotalTermFreq();
+					sumDocFreq += terms.getSumDocFreq();
+					NumericDocValues norms = leaf.reader().getNormValues(fieldInfo.name);
+					if (norms != null) {
+						while (norms.nextDoc() != NumericDocValues.NO_MORE_DOCS) {
+							sumTotalTermFreq += norms.longValue();
+						}
+					}
+				}
+				userData.put(IndriConstants.COMMIT_FIELD_STATISTICS_PREFIX + fieldInfo.name,
+						docCount + "," + sumTotalTermFreq + "," + sumDocFreq);
+			}
+		}
+		writer.setLiveCommitData(userData.entrySet());
+	}
+
+	private static FieldType getFieldType() {
+		FieldType fieldType = new FieldType();
+		fieldType.setTokenized(true);
+		fieldType.setStored(true);
+		fieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS_AND_POSITIONS);
+		fieldType.freeze();
+		return fieldType;
+	}
+
+	/** Returns the word of a frequency rank, counting from 1. */
+	public static String getTerm(int rank) {
+		return "t" + rank;
+	}
+
+	/** Draws a frequency rank, counting from 1. */
+	public int sampleRank(Random random) {
+		int index = Arrays.binarySearch(cumulativeFrequencies, random.nextDouble());
+		return (index >= 0 ? index : -index - 1) + 1;
+	}
+
+	/** Returns the directory of the index. */
+	public Path getPath() {
+		return path;
+	}
+
+	public DirectoryReader getReader() {
+		return reader;
+	}
+
+	/** Closes the index and deletes its directory. */
+	@Override
+	public void close() throws IOException {
+		reader.close();
+		directory.close();
+		Files.walkFileTree(path, new SimpleFileVisitor<Path>() {
+			@Override
+			public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+				Files.delete(file);
+				return FileVisitResult.CONTINUE;
+			}
+
+			@Override
+			public FileVisitResult postVisitDirectory(Path dir, IOException e) throws IOException {
+				Files.delete(dir);
+				return FileVisitResult.CONTINUE;
+			}
+		});
+	}
+
+}
@@ -0,0 +1,39 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Indri #combine / #weight. Scores a document by the weighted average of the
+ * scores of its clauses, using the smoothing score of clauses that do not
+ * occur in the document.
+ */
+public class IndriAndQuery extends IndriQuery {
+
+	public IndriAndQuery(List<BooleanClause> clauses) {
+		super(clauses);
+	}
+
+	@Override
+	public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
+		IndriAndQuery query = this;
+		return new IndriAndWeight(query, searcher, scoreMode, boost);
+	}
+
+}
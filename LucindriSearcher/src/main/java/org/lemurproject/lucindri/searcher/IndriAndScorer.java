@@ -0,0 +1,310 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.IndriScorer;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.Scorer;
+import org.apache.lucene.search.Weight;
+
+/**
+ * Scorer for #combine / #weight. Documents are visited as the union of the
+ * clauses and scored by the weighted average of the clause scores, with the
+ * smoothing score of clauses that are not on the document.
+ * <p>
+ * Once the collector reports a minimum competitive score, the clauses are
+ * split MaxScore-style: the clauses with the smallest gain between their
+ * smoothing bound and their score bound become non-essential as long as a
+ * document matching only those clauses cannot reach the minimum score. Only
+ * the essential clauses drive iteration, and the non-essential ones are just
+ * advanced to the candidates whose bound is still competitive. Clauses that
+ * know the score bounds of blocks of documents tighten the bounds to the
+ * block of the candidate, and whole blocks are skipped when no document in
+ * them can be competitive.
+ */
+public class IndriAndScorer extends IndriScorer implements IndriScoreBounds {
+
+	private final List<Scorer> subScorers;
+	private final DocIdSetIterator[] iterators;
+	private final double boostSum;
+	// Whether every clause has finite bounds and a non-negative boost
+	private final boolean bounded;
+	// Sum over the clauses of boost * smoothing bound
+	private final double maxSmoothingSum;
+	// Sum over the clauses of boost * score bound
+	private final double maxScoreSum;
+	// Per clause, boost * (score bound - smoothing bound)
+	private final double[] maxGains;
+	// Clauses in order of increasing gain; the first numNonEssential are
+	// non-essential
+	private final int[] order;
+	private int numNonEssential;
+	private double nonEssentialGain;
+	private double minCompetitiveSum;
+	// Per clause, the gain bound up to blockUpTo
+	private final double[] blockGains;
+	private double blockBound;
+	private int blockUpTo;
+	private final DocIdSetIterator iterator;
+	private int doc;
+
+	protected IndriAndScorer(Weight weight, List<Scorer> subScorers, ScoreMode scoreMode, float boost)
+			throws IOException {
+		super(weight, boost);
+		this.subScorers = subScorers;
+		iterators = new DocIdSetIterator[subScorers.size()];
+		maxGains = new double[subScorers.size()];
+		blockGains = new double[subScorers.size()];
+		double boostSum = 0;
+		double maxSmoothingSum = 0;
+		double maxScoreSum = 0;
+		boolean bounded = true;
+		long cost = 0;
+		for (int i = 0; i < subScorers.size(); i++) {
+			Scorer scorer = subScorers.get(i);
+			iterators[i] = scorer.iterator();
+			cost += iterators[i].cost();
+			if (scorer instanceof IndriScorer) {
+				// Only Indri scorers contribute to the score
+				float subBoost = ((IndriScorer) scorer).getBoost();
+				boostSum += subBoost;
+				if (scorer instanceof IndriScoreBounds && subBoost >= 0) {
+					double maxScore = subBoost * scorer.getMaxScore(DocIdSetIterator.NO_MORE_DOCS);
+					double maxSmoothing = subBoost * ((IndriScoreBounds) scorer).getMaxSmoothingScore();
+					// Smoothing scores can be above the scores of the longer documents of
+					// the clause
+					maxScoreSum += Math.max(maxScore, maxSmoothing);
+					maxSmoothingSum += maxSmoothing;
+					maxGains[i] = Math.max(0, maxScore - maxSmoothing);
+				} else {
+					bounded = false;
+				}
+			}
+		}
+		this.boostSum = boostSum;
+		this.maxSmoothingSum = maxSmoothingSum;
+		this.maxScoreSum = maxScoreSum;
+		this.bounded = bounded && boostSum > 0 && Double.isFinite(maxScoreSum) && Double.isFinite(maxSmoothingSum);
+
+		order = new int[subScorers.size()];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		// Insertion sort, there are only a few clauses
+		for (int i = 1; i < order.length; i++) {
+			int clause = order[i];
+			int j = i - 1;
+			while (j >= 0 && maxGains[order[j]] > maxGains[clause]) {
+				order[j + 1] = order[j];
+				j--;
+			}
+			order[j + 1] = clause;
+		}
+		numNonEssential = 0;
+		nonEssentialGain = 0;
+		minCompetitiveSum = Double.NEGATIVE_INFINITY;
+		blockUpTo = -1;
+		doc = -1;
+
+		final long iteratorCost = cost;
+		iterator = new DocIdSetIterator() {
+			@Override
+			public int docID() {
+				return doc;
+			}
+
+			@Override
+			public int nextDoc() throws IOException {
+				return advance(doc + 1);
+			}
+
+			@Override
+			public int advance(int target) throws IOException {
+				doc = nextCandidate(target);
+				return doc;
+			}
+
+			@Override
+			public long cost() {
+				return iteratorCost;
+			}
+		};
+	}
+
+	/**
+	 * Returns the first document at or after {@code target} that is on an
+	 * essential clause and whose score bound is competitive. Every clause is
+	 * positioned at or after the returned document.
+	 */
+	private int nextCandidate(int target) throws IOException {
+		while (true) {
+			int candidate = DocIdSetIterator.NO_MORE_DOCS;
+			for (int i = numNonEssential; i < order.length; i++) {
+				DocIdSetIterator it = iterators[order[i]];
+				int docID = it.docID();
+				if (docID < target) {
+					docID = it.advance(target);
+				}
+				candidate = Math.min(candidate, docID);
+			}
+			if (candidate == DocIdSetIterator.NO_MORE_DOCS || minCompetitiveSum == Double.NEGATIVE_INFINITY) {
+				return candidate;
+			}
+
+			if (candidate > blockUpTo) {
+				moveBlock(candidate);
+			}
+			if (blockBound < minCompetitiveSum) {
+				if (blockUpTo == DocIdSetIterator.NO_MORE_DOCS) {
+					return blockUpTo;
+				}
+				target = blockUpTo + 1;
+				continue;
+			}
+
+			double bound = maxSmoothingSum;
+			for (int i = 0; i < numNonEssential; i++) {
+				bound += blockGains[order[i]];
+			}
+			for (int i = numNonEssential; i < order.length; i++) {
+				if (iterators[order[i]].docID() == candidate) {
+					bound += blockGains[order[i]];
+				}
+			}
+			if (bound >= minCompetitiveSum) {
+				for (int i = 0; i < numNonEssential; i++) {
+					DocIdSetIterator it = iterators[order[i]];
+					int docID = it.docID();
+					if (docID < candidate) {
+						docID = it.advance(candidate);
+					}
+					if (docID != candidate) {
+						bound -= blockGains[order[i]];
+					}
+				}
+				if (bound >= minCompetitiveSum) {
+					return candidate;
+				}
+			}
+			target = candidate + 1;
+		}
+	}
+
+	/**
+	 * Moves to the largest block starting at {@code target} that is within the
+	 * current block of every clause, and computes the gain bounds of the clauses
+	 * in it.
+	 */
+	private void moveBlock(int target) throws IOException {
+		blockUpTo = DocIdSetIterator.NO_MORE_DOCS;
+		for (Scorer scorer : subScorers) {
+			blockUpTo = Math.min(blockUpTo, scorer.advanceShallow(target));
+		}
+		blockBound = maxSmoothingSum;
+		for (int i = 0; i < subScorers.size(); i++) {
+			Scorer scorer = subScorers.get(i);
+			if (scorer instanceof IndriScorer) {
+				float subBoost = ((IndriScorer) scorer).getBoost();
+				double maxScore = subBoost * scorer.getMaxScore(blockUpTo);
+				double maxSmoothing = subBoost * ((IndriScoreBounds) scorer).getMaxSmoothingScore();
+				blockGains[i] = Math.min(maxGains[i], Math.max(0, maxScore - maxSmoothing));
+				blockBound += blockGains[i];
+			}
+		}
+	}
+
+	@Override
+	public void setMinCompetitiveScore(float minScore) throws IOException {
+		if (!bounded) {
+			return;
+		}
+		// Scores are computed in double and rounded to float, so only documents
+		// bounded a full ulp below the minimum score are safe to skip
+		minCompetitiveSum = ((double) minScore - Math.ulp(minScore)) * boostSum;
+		numNonEssential = 0;
+		nonEssentialGain = 0;
+		while (numNonEssential < order.length
+				&& maxSmoothingSum + nonEssentialGain + maxGains[order[numNonEssential]] < minCompetitiveSum) {
+			nonEssentialGain += maxGains[order[numNonEssential]];
+			numNonEssential++;
+		}
+	}
+
+	@Override
+	public DocIdSetIterator iterator() {
+		return iterator;
+	}
+
+	@Override
+	public int docID() {
+		return doc;
+	}
+
+	@Override
+	public float score() throws IOException {
+		return scoreDoc(doc);
+	}
+
+	@Override
+	public float smoothingScore(int docId) throws IOException {
+		return scoreDoc(docId);
+	}
+
+	@Override
+	public float getMaxScore(int upTo) throws IOException {
+		if (!bounded) {
+			return Float.POSITIVE_INFINITY;
+		}
+		return Math.nextUp((float) (maxScoreSum / boostSum));
+	}
+
+	@Override
+	public float getMaxSmoothingScore() throws IOException {
+		if (!bounded) {
+			return Float.POSITIVE_INFINITY;
+		}
+		return Math.nextUp((float) (maxSmoothingSum / boostSum));
+	}
+
+	private float scoreDoc(int docId) throws IOException {
+		double score = 0;
+		double boostSum = 0.0;
+		for (Scorer scorer : subScorers) {
+			if (scorer instanceof IndriScorer) {
+				IndriScorer indriScorer = (IndriScorer) scorer;
+				int scorerDocId = indriScorer.docID();
+				// If the query exists in the document, score the document
+				// Otherwise, compute a smoothing score, which acts like an idf
+				// for subqueries/terms
+				double tempScore = 0;
+				if (docId == scorerDocId) {
+					tempScore = indriScorer.score();
+				} else {
+					tempScore = indriScorer.smoothingScore(docId);
+				}
+				tempScore *= indriScorer.getBoost();
+				score += tempScore;
+				boostSum += indriScorer.getBoost();
+			}
+		}
+		if (boostSum == 0) {
+			return 0;
+		} else {
+			return (float) (score / boostSum);
+		}
+	}
+
+}
@@ -11,21 +11,34 @@ import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.Weight;
 
-abstract public class IndriDisjunctionScorer extends org.apache.lucene.search.IndriScorer {
+/**
+ * Base of the scorers that visit the union of their clauses. Their scores grow
+ * with the scores of the clauses, so combining the score bounds of the clauses
+ * bounds the score, and an enclosing #combine can skip the documents where the
+ * operator cannot be competitive.
+ */
+abstract public class IndriDisjunctionScorer extends org.apache.lucene.search.IndriScorer
+		implements IndriScoreBounds {
 
 	private final List<Scorer> subScorersList;
+	// The clauses in a final array, so that scoring a document does not allocate
+	protected final Scorer[] scorers;
 	private final DisiPriorityQueue subScorers;
 	private final DocIdSetIterator approximation;
+	// Reused by the bound computations
+	private final float[] clauseBounds;
 
 	protected IndriDisjunctionScorer(Weight weight, List<Scorer> subScorersList, ScoreMode scoreMode, float boost) {
 		super(weight, boost);
 		this.subScorersList = subScorersList;
+		this.scorers = subScorersList.toArray(new Scorer[0]);
 		this.subScorers = new DisiPriorityQueue(subScorersList.size());
 		for (Scorer scorer : subScorersList) {
 			final DisiWrapper w = new DisiWrapper(scorer);
 			this.subScorers.add(w);
 		}
 		this.approximation = new DisjunctionDISIApproximation(this.subScorers);
+		this.clauseBounds = new float[scorers.length];
 	}
 
 	@Override
@@ -33,27 +46,66 @@ abstract public class IndriDisjunctionScorer extends org.apache.lucene.search.In
 		return approximation;
 	}
 
+	@Override
+	public int advanceShallow(int target) throws IOException {
+		int upTo = DocIdSetIterator.NO_MORE_DOCS;
+		for (Scorer scorer : scorers) {
+			upTo = Math.min(upTo, scorer.advanceShallow(target));
+		}
+		return upTo;
+	}
+
 	@Override
 	public float getMaxScore(int upTo) throws IOException {
-		return 0;
+		for (int i = 0; i < scorers.length; i++) {
+			// A clause gives the documents it is not on its smoothing score, which is
+			// above its score on the documents it is on when these are longer
+			if (scorers[i] instanceof IndriScoreBounds) {
+				clauseBounds[i] = Math.max(scorers[i].getMaxScore(upTo),
+						((IndriScoreBounds) scorers[i]).getMaxSmoothingScore());
+			} else {
+				clauseBounds[i] = Float.POSITIVE_INFINITY;
+			}
+		}
+		return Math.nextUp((float) combineBounds(clauseBounds));
 	}
 
+	@Override
+	public float getMaxSmoothingScore() throws IOException {
+		for (int i = 0; i < scorers.length; i++) {
+			clauseBounds[i] = scorers[i] instanceof IndriScoreBounds
+					? ((IndriScoreBounds) scorers[i]).getMaxSmoothingScore()
+					: Float.POSITIVE_INFINITY;
+		}
+		return Math.nextUp((float) combineBounds(clauseBounds));
+	}
+
+	/**
+	 * Combines upper bounds of the scores of the clauses, in the order of
+	 * {@link #scorers}, into an upper bound of the score, like
+	 * {@link #scoreDoc(int)} combines the scores. Returns positive infinity when
+	 * there is no bound.
+	 */
+	abstract double combineBounds(float[] clauseBounds);
+
 	public List<Scorer> getSubMatches() throws IOException {
 		return subScorersList;
 	}
 
-	abstract float score(List<Scorer> subScorers) throws IOException;
-
-	abstract public float smoothingScore(List<Scorer> subScorers, int docId) throws IOException;
+	/**
+	 * Combines the scores of the clauses on {@code docId} with the smoothing
+	 * scores of the other clauses.
+	 */
+	abstract float scoreDoc(int docId) throws IOException;
 
 	@Override
 	public float score() throws IOException {
-		return score(getSubMatches());
+		return scoreDoc(docID());
 	}
 
 	@Override
 	public float smoothingScore(int docId) throws IOException {
-		return smoothingScore(getSubMatches(), docId);
+		return scoreDoc(docId);
 	}
 
 	@Override
@@ -14,6 +14,7 @@ package org.lemurproject.lucindri.searcher;
 import java.io.IOException;
 
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
 
 public abstract class IndriDocAndPostingsIterator extends PostingsEnum {
 
@@ -31,4 +32,20 @@ public abstract class IndriDocAndPostingsIterator extends PostingsEnum {
 
 	public abstract int endPosition() throws IOException;
 
+	/**
+	 * Drains the iterator into an inverted list holding the extents of every
+	 * remaining document.
+	 */
+	public IndriInvertedList toInvertedList(String field) throws IOException {
+		IndriInvertedList invList = new IndriInvertedList(field);
+		while (nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+			int freq = freq();
+			for (int i = 0; i < freq; i++) {
+				int start = nextPosition();
+				invList.addPosting(docID(), start, endPosition());
+			}
+		}
+		return invList;
+	}
+
 }
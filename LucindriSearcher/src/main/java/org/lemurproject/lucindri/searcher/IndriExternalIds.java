@@ -0,0 +1,148 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.ReaderUtil;
+import org.apache.lucene.index.SortedDocValues;
+import org.apache.lucene.search.ScoreDoc;
+
+/**
+ * Looks up the external ids of documents. The indexer stores every external id
+ * as a sorted doc values column as well as a stored field. Reading the column
+ * only touches the id, where loading the stored document decompresses a block
+ * of stored fields, fulltext included. Segments of indexes built before the
+ * column existed fall back to the stored field.
+ * <p>
+ * The ids can also be loaded into memory when the lookup is created, which
+ * suits indexes that answer many queries.
+ */
+public class IndriExternalIds {
+
+	private final static String EXTERNALID_FIELD = "externalId";
+	private final static Set<String> EXTERNALID_FIELDS = Collections.singleton(EXTERNALID_FIELD);
+
+	private final IndexReader reader;
+	private final List<LeafReaderContext> leaves;
+	// Ids of all documents, null unless they were loaded
+	private final String[] ids;
+
+	/** Creates a lookup that reads the ids from the index. */
+	public IndriExternalIds(IndexReader reader) throws IOException {
+		this(reader, false);
+	}
+
+	/**
+	 * Creates a lookup that reads the ids from the index, or from memory if
+	 * {@code load} is set, in which case the ids of all documents are read now.
+	 */
+	public IndriExternalIds(IndexReader reader, boolean load) throws IOException {
+		this.reader = reader;
+		this.leaves = reader.leaves();
+		if (load) {
+			ids = new String[reader.maxDoc()];
+			for (LeafReaderContext leaf : leaves) {
+				int[] docs = new int[leaf.reader().maxDoc()];
+				for (int i = 0; i < docs.length; i++) {
+					docs[i] = i;
+				}
+				String[] leafIds = getLeafIds(leaf, docs);
+				System.arraycopy(leafIds, 0, ids, leaf.docBase, leafIds.length);
+			}
+		} else {
+			ids = null;
+		}
+	}
+
+	/** Returns the external id of a document, or null if it has none. */
+	public String get(int doc) throws IOException {
+		return get(new ScoreDoc[] { new ScoreDoc(doc, 0) })[0];
+	}
+
+	/**
+	 * Returns the external ids of the hits, in the order of the hits. The column
+	 * of each segment is read forward once, in document order.
+	 */
+	public String[] get(ScoreDoc[] scoreDocs) throws IOException {
+		String[] hitIds = new String[scoreDocs.length];
+		if (ids != null) {
+			for (int i = 0; i < scoreDocs.length; i++) {
+				hitIds[i] = ids[scoreDocs[i].doc];
+			}
+			return hitIds;
+		}
+
+		// Positions of the hits in document order
+		Integer[] order = new Integer[scoreDocs.length];
+		for (int i = 0; i < order.length; i++) {
+			order[i] = i;
+		}
+		Arrays.sort(order, (i, j) -> Integer.compare(scoreDocs[i].doc, scoreDocs[j].doc));
+
+		int start = 0;
+		while (start < order.length) {
+			LeafReaderContext leaf = leaves.get(ReaderUtil.subIndex(scoreDocs[order[start]].doc, leaves));
+			int end = start;
+			while (end < order.length && scoreDocs[order[end]].doc < leaf.docBase + leaf.reader().maxDoc()) {
+				end++;
+			}
+			int[] docs = new int[end - start];
+			for (int i = 0; i < docs.length; i++) {
+				docs[i] = scoreDocs[order[start + i]].doc - leaf.docBase;
+			}
+			String[] leafIds = getLeafIds(leaf, docs);
+			for (int i = 0; i < docs.length; i++) {
+				hitIds[order[start + i]] = leafIds[i];
+			}
+			start = end;
+		}
+		return hitIds;
+	}
+
+	/** Returns the ids of the documents of a segment, given in increasing order. */
+	private String[] getLeafIds(LeafReaderContext leaf, int[] docs) throws IOException {
+		String[] leafIds = new String[docs.length];
+		LeafReader leafReader = leaf.reader();
+		FieldInfo fieldInfo = leafReader.getFieldInfos().fieldInfo(EXTERNALID_FIELD);
+		if (fieldInfo != null && fieldInfo.getDocValuesType() == DocValuesType.SORTED) {
+			SortedDocValues values = leafReader.getSortedDocValues(EXTERNALID_FIELD);
+			int lastDoc = -1;
+			boolean found = false;
+			for (int i = 0; i < docs.length; i++) {
+				// The iterator cannot go back to a document that is a hit twice
+				if (docs[i] != lastDoc) {
+					found = values.advanceExact(docs[i]);
+					lastDoc = docs[i];
+				}
+				if (found) {
+					leafIds[i] = values.binaryValue().utf8ToString();
+				}
+			}
+		} else {
+			for (int i = 0; i < docs.length; i++) {
+				leafIds[i] = reader.document(leaf.docBase + docs[i], EXTERNALID_FIELDS).get(EXTERNALID_FIELD);
+			}
+		}
+		return leafIds;
+	}
+
+}
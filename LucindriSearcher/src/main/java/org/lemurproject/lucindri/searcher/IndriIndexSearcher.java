@@ -12,64 +12,208 @@
 package org.lemurproject.lucindri.searcher;
 
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
 
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermStates;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TopDocs;
+import org.lemurproject.lucindri.searcher.domain.IndriConstants;
 
 public class IndriIndexSearcher extends IndexSearcher {
 
-	private CollectionStatistics collectionStatistics;
+	public static final int DEFAULT_TERM_CACHE_SIZE = 10000;
+
+	// Statistics by field, null for fields that are not in the index
+	private final Map<String, CollectionStatistics> collectionStatistics;
+	private IndriTermStatesCache termStatesCache;
+	private IndriProximityListCache proximityListCache;
+	private IndriResultCache resultCache;
 
 	public IndriIndexSearcher(IndexReader r) {
 		super(r);
+		collectionStatistics = new HashMap<>();
+		setTermCacheSize(DEFAULT_TERM_CACHE_SIZE);
+	}
+
+	/**
+	 * Creates a searcher that scores the leaf slices of the reader concurrently on
+	 * the given executor and merges the per-slice top hits.
+	 */
+	public IndriIndexSearcher(IndexReader r, Executor executor) {
+		super(r, executor);
+		collectionStatistics = new HashMap<>();
+		setTermCacheSize(DEFAULT_TERM_CACHE_SIZE);
+	}
+
+	/**
+	 * Sets the number of terms whose {@link TermStates} are kept across queries,
+	 * discarding the ones cached so far. A size of 0 disables the cache.
+	 */
+	public void setTermCacheSize(int termCacheSize) {
+		termStatesCache = termCacheSize > 0 ? new IndriTermStatesCache(getTopReaderContext(), termCacheSize) : null;
+	}
+
+	/**
+	 * Returns the cache of term states, or null if it is disabled.
+	 */
+	public IndriTermStatesCache getTermStatesCache() {
+		return termStatesCache;
+	}
+
+	/**
+	 * Sets the memory, in bytes, for the extents of proximity operators kept
+	 * across queries, discarding the ones cached so far. A size of 0, the
+	 * default, disables the cache, and proximity operators are evaluated lazily.
+	 */
+	public void setProximityCacheSize(long proximityCacheBytes) {
+		proximityListCache = proximityCacheBytes > 0 ? new IndriProximityListCache(proximityCacheBytes) : null;
+	}
+
+	/**
+	 * Returns the cache of proximity extents, or null if it is disabled.
+	 */
+	public IndriProximityListCache getProximityListCache() {
+		return proximityListCache;
+	}
+
+	/**
+	 * Returns the TermStates of the term in this searcher's reader, with term
+	 * statistics if {@code needsStats} is true. Only TermStates with statistics
+	 * are cached.
+	 */
+	public TermStates getTermStates(Term term, boolean needsStats) throws IOException {
+		IndriTermStatesCache cache = termStatesCache;
+		if (cache == null || !needsStats) {
+			return TermStates.build(getTopReaderContext(), term, needsStats);
+		}
+		return cache.get(term);
+	}
+
+	/**
+	 * Finds the top {@code n} hits with an {@link IndriTopDocsCollector}, which
+	 * lets #combine skip documents that cannot make it into the top hits. With a
+	 * result cache, repeated queries are answered from the cache.
+	 */
+	@Override
+	public TopDocs search(Query query, int n) throws IOException {
+		int numHits = Math.min(n, Math.max(1, getIndexReader().maxDoc()));
+		IndriResultCache cache = resultCache;
+		if (cache != null) {
+			TopDocs topDocs = cache.get(getIndexReader(), getSimilarity(), query, numHits);
+			if (topDocs != null) {
+				return topDocs;
+			}
+		}
+		TopDocs topDocs = search(query, IndriTopDocsCollector.createManager(numHits));
+		if (cache != null) {
+			cache.put(getIndexReader(), getSimilarity(), query, numHits, topDocs);
+		}
+		return topDocs;
 	}
 
+	/**
+	 * Sets the cache of the top hits of queries, which may be shared with the
+	 * searchers of earlier readers of the index. Null, the default, disables it.
+	 */
+	public void setResultCache(IndriResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
+	public IndriResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * Returns the statistics of the field. Indexes written by the Lucindri indexer
+	 * carry them in their commit user data. Other indexes are scanned the first
+	 * time a field is asked for.
+	 */
 	@Override
-	public CollectionStatistics collectionStatistics(String field) throws IOException {
-		if (collectionStatistics == null) {
-			long docCount = 0;
-			long sumTotalTermFreq = 0;
-			long sumDocFreq = 0;
-			for (LeafReaderContext leaf : getIndexReader().leaves()) {
-				final Terms terms = leaf.reader().terms(field);
-				if (terms == null) {
-					continue;
-				}
-				docCount += terms.getDocCount();
-				sumTotalTermFreq += terms.getSumTotalTermFreq();
-				// System.out.println("Number of tokens (lucene): " +
-				// terms.getSumTotalTermFreq());
-				sumDocFreq += terms.getSumDocFreq();
-
-				NumericDocValues numericDocValues = leaf.reader().getNormValues(field);
-				int nextDoc = numericDocValues.nextDoc();
-				int noNorm = 0;
-				int normCount = 0;
-				long tempFreq = 0;
-				while (nextDoc != numericDocValues.NO_MORE_DOCS) {
-					if (numericDocValues.longValue() < 1) {
-						noNorm++;
-					} else {
-						normCount++;
-					}
-					long normValue = numericDocValues.longValue();
-					tempFreq += normValue;
-					sumTotalTermFreq += normValue;
-					nextDoc = numericDocValues.nextDoc();
-				}
-				// System.out.println("Number of tokens calculated: " + tempFreq);
+	public synchronized CollectionStatistics collectionStatistics(String field) throws IOException {
+		if (!collectionStatistics.containsKey(field)) {
+			FieldTotals totals = new FieldTotals();
+			addFieldTotals(getIndexReader().getContext(), field, totals);
+			CollectionStatistics fieldStatistics = null;
+			if (totals.docCount > 0) {
+				fieldStatistics = new CollectionStatistics(field, getIndexReader().maxDoc(), totals.docCount,
+						totals.sumTotalTermFreq, totals.sumDocFreq);
 			}
-			if (docCount == 0) {
-				return null;
+			collectionStatistics.put(field, fieldStatistics);
+		}
+		return collectionStatistics.get(field);
+	}
+
+	private void addFieldTotals(IndexReaderContext context, String field, FieldTotals totals) throws IOException {
+		if (context.reader() instanceof DirectoryReader
+				&& addCommitTotals((DirectoryReader) context.reader(), field, totals)) {
+			return;
+		}
+		if (context instanceof LeafReaderContext) {
+			addLeafTotals((LeafReaderContext) context, field, totals);
+			return;
+		}
+		for (IndexReaderContext child : context.children()) {
+			addFieldTotals(child, field, totals);
+		}
+	}
+
+	/**
+	 * Adds the totals the indexer stored in the commit of the reader, and returns
+	 * false if it did not store any for this index.
+	 */
+	private boolean addCommitTotals(DirectoryReader reader, String field, FieldTotals totals) throws IOException {
+		Map<String, String> userData = reader.getIndexCommit().getUserData();
+		String generation = userData.get(IndriConstants.COMMIT_GENERATION);
+		String maxDoc = userData.get(IndriConstants.COMMIT_MAX_DOC);
+		if (generation == null || maxDoc == null
+				|| Long.parseLong(generation) != reader.getIndexCommit().getGeneration()
+				|| Integer.parseInt(maxDoc) != reader.maxDoc()) {
+			// Not written by the indexer, or documents were added or deleted since
+			return false;
+		}
+		String fieldTotals = userData.get(IndriConstants.COMMIT_FIELD_STATISTICS_PREFIX + field);
+		if (fieldTotals != null) {
+			String[] values = fieldTotals.split(",");
+			totals.docCount += Long.parseLong(values[0]);
+			totals.sumTotalTermFreq += Long.parseLong(values[1]);
+			totals.sumDocFreq += Long.parseLong(values[2]);
+		}
+		return true;
+	}
+
+	private void addLeafTotals(LeafReaderContext leaf, String field, FieldTotals totals) throws IOException {
+		final Terms terms = leaf.reader().terms(field);
+		if (terms == null) {
+			return;
+		}
+		totals.docCount += terms.getDocCount();
+		totals.sumTotalTermFreq += terms.getSumTotalTermFreq();
+		totals.sumDocFreq += terms.getSumDocFreq();
+
+		// The norm of every document is counted in the collection length as well
+		NumericDocValues numericDocValues = leaf.reader().getNormValues(field);
+		if (numericDocValues != null) {
+			while (numericDocValues.nextDoc() != NumericDocValues.NO_MORE_DOCS) {
+				totals.sumTotalTermFreq += numericDocValues.longValue();
 			}
-			collectionStatistics = new CollectionStatistics(field, getIndexReader().maxDoc(), docCount,
-					sumTotalTermFreq, sumDocFreq);
 		}
-		return collectionStatistics;
+	}
+
+	private static class FieldTotals {
+		long docCount;
+		long sumTotalTermFreq;
+		long sumDocFreq;
 	}
 
 }
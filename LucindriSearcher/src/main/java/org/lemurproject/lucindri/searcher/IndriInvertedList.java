@@ -11,77 +11,155 @@
  */
 package org.lemurproject.lucindri.searcher;
 
-import java.util.TreeMap;
-
 import org.apache.lucene.index.Term;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.util.Accountable;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * Inverted list of the extents matched by a proximity operator in one leaf.
+ * Postings are packed into parallel int arrays: the matching doc ids, the
+ * offset of each doc's first extent, and the start and end position of every
+ * extent. The arrays grow as postings are added, which must happen in doc id
+ * order and, within a document, in order of start position.
+ */
+public class IndriInvertedList implements Accountable {
 
-public class IndriInvertedList {
+	private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(IndriInvertedList.class);
 
 	private final String field;
-	private int ctf;
-	private int df;
-	private TreeMap<Integer, TreeMap<Integer, IndriDocumentPosting>> docPostings;
+	private int[] docIds;
+	private int[] docOffsets;
+	private int[] starts;
+	private int[] ends;
+	private int numDocs;
+	private int numPostings;
+	// Largest end position of the extents in the last document
+	private int maxEnd;
 
 	public IndriInvertedList(String field) {
 		this.field = field;
-		docPostings = new TreeMap<>();
+		docIds = new int[8];
+		docOffsets = new int[9];
+		starts = new int[16];
+		ends = new int[16];
 	}
 
 	public String getField() {
 		return field;
 	}
 
+	/** Returns the total number of extents in the list. */
 	public int getCtf() {
-		return ctf;
+		return numPostings;
 	}
 
-	public void setCtf(int ctf) {
-		this.ctf = ctf;
+	/** Returns the number of documents with at least one extent. */
+	public int getDf() {
+		return numDocs;
 	}
 
-	public int getDf() {
-		return df;
+	/**
+	 * Adds an extent to the list unless it is contained in an extent that was
+	 * already added for the document. An extent with the same start as the
+	 * previous one replaces it.
+	 */
+	public void addPosting(int docID, int startLocation, int endLocation) {
+		if (numDocs == 0 || docIds[numDocs - 1] != docID) {
+			assert numDocs == 0 || docID > docIds[numDocs - 1] : "postings must be added in doc id order";
+			docIds = ArrayUtil.grow(docIds, numDocs + 1);
+			docOffsets = ArrayUtil.grow(docOffsets, numDocs + 2);
+			docIds[numDocs] = docID;
+			docOffsets[numDocs] = numPostings;
+			numDocs++;
+			maxEnd = Integer.MIN_VALUE;
+		} else {
+			assert startLocation >= starts[numPostings - 1] : "postings must be added in start position order";
+			// Every earlier extent starts at or before this one, so it is contained
+			// in one of them exactly when one of them ends at or after it
+			if (endLocation <= maxEnd) {
+				return;
+			}
+			if (starts[numPostings - 1] == startLocation) {
+				ends[numPostings - 1] = endLocation;
+				maxEnd = endLocation;
+				return;
+			}
+		}
+		starts = ArrayUtil.grow(starts, numPostings + 1);
+		ends = ArrayUtil.grow(ends, numPostings + 1);
+		starts[numPostings] = startLocation;
+		ends[numPostings] = endLocation;
+		numPostings++;
+		docOffsets[numDocs] = numPostings;
+		maxEnd = Math.max(maxEnd, endLocation);
 	}
 
-	public void setDf(int df) {
-		this.df = df;
+	/** Removes all postings so the list can be refilled. */
+	public void clear() {
+		numDocs = 0;
+		numPostings = 0;
+		docOffsets[0] = 0;
 	}
 
-	public TreeMap<Integer, TreeMap<Integer, IndriDocumentPosting>> getDocPostings() {
-		return docPostings;
+	/** Returns the doc id of the document at {@code index}. */
+	public int getDocId(int index) {
+		return docIds[index];
 	}
 
-	public void setDocPostings(TreeMap<Integer, TreeMap<Integer, IndriDocumentPosting>> docPostings) {
-		this.docPostings = docPostings;
+	/**
+	 * Returns the index of the first extent of the document at {@code index}. The
+	 * extents of that document end just before the offset of the next document.
+	 */
+	public int getPostingsOffset(int index) {
+		return docOffsets[index];
 	}
 
-	public void addPosting(Integer docID, Integer startLocation, Integer endLocation) {
-		docPostings.putIfAbsent(docID, new TreeMap<>());
-		// Check if a posting that includes this start and end position already exist
-		TreeMap<Integer, IndriDocumentPosting> postings = docPostings.get(docID);
-		boolean addPosting = true;
-		for (IndriDocumentPosting posting : postings.values()) {
-			if (startLocation >= posting.getStart() && endLocation <= posting.getEnd()) {
-				addPosting = false;
-			}
+	/** Returns the start position of the extent at {@code posting}. */
+	public int getStart(int posting) {
+		return starts[posting];
+	}
+
+	/** Returns the end position of the extent at {@code posting}. */
+	public int getEnd(int posting) {
+		return ends[posting];
+	}
+
+	/**
+	 * Returns the index of the first document at or after {@code fromIndex} whose
+	 * doc id is at least {@code target}, or the number of documents if there is
+	 * none.
+	 */
+	public int findDoc(int target, int fromIndex) {
+		if (target == DocIdSetIterator.NO_MORE_DOCS) {
+			return numDocs;
 		}
-		if (addPosting) {
-			IndriDocumentPosting posting = new IndriDocumentPosting(startLocation, endLocation);
-			docPostings.get(docID).put(startLocation, posting);
+		int low = fromIndex;
+		int high = numDocs - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (docIds[mid] < target) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
 		}
+		return low;
+	}
+
+	@Override
+	public long ramBytesUsed() {
+		return BASE_RAM_BYTES_USED + RamUsageEstimator.sizeOf(docIds) + RamUsageEstimator.sizeOf(docOffsets)
+				+ RamUsageEstimator.sizeOf(starts) + RamUsageEstimator.sizeOf(ends);
 	}
 
 	public TermStatistics getTermStatistics() {
 		Term dummyTerm = new Term(field, "NEAR");
-		int docFreq = docPostings.size();
-		int totalTermFreq = 0;
-		for (TreeMap<Integer, IndriDocumentPosting> postings : docPostings.values()) {
-			totalTermFreq += postings.size();
-		}
 		TermStatistics termStats = null;
-		if (docFreq > 0) {
-			termStats = new TermStatistics(dummyTerm.bytes(), docFreq, totalTermFreq);
+		if (numDocs > 0) {
+			termStats = new TermStatistics(dummyTerm.bytes(), numDocs, numPostings);
 		}
 
 		return termStats;
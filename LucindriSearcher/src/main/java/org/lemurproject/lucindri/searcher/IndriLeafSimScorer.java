@@ -0,0 +1,83 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.NumericDocValues;
+import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.LeafSimScorer;
+import org.apache.lucene.search.similarities.Similarity;
+import org.apache.lucene.search.similarities.Similarity.SimScorer;
+import org.lemurproject.lucindri.searcher.domain.IndriConstants;
+import org.lemurproject.lucindri.searcher.similarities.IndriSimilarity;
+
+/**
+ * Lucindri's {@link LeafSimScorer}. An {@link IndriSimilarity} scores with the
+ * exact document lengths of a field when the index has a length column for it,
+ * and other similarities, which only decode norms, score with the norms of the
+ * field, as LeafSimScorer does. The length column is a numeric doc values
+ * field, which is read from the memory-mapped index files like norms are. Its
+ * values are passed to the similarity flagged as
+ * {@link IndriSimilarity#EXACT_LENGTH}.
+ */
+public final class IndriLeafSimScorer {
+
+	private final SimScorer scorer;
+	private final NumericDocValues norms;
+	private final boolean exactLengths;
+
+	public IndriLeafSimScorer(SimScorer scorer, Similarity similarity, LeafReader reader, String field,
+			boolean needsScores) throws IOException {
+		this.scorer = scorer;
+		String lengthField = field + IndriConstants.FIELD_LENGTH_SUFFIX;
+		FieldInfo lengthFieldInfo = reader.getFieldInfos().fieldInfo(lengthField);
+		exactLengths = needsScores && similarity instanceof IndriSimilarity && lengthFieldInfo != null
+				&& lengthFieldInfo.getDocValuesType() == DocValuesType.NUMERIC;
+		if (exactLengths) {
+			norms = reader.getNumericDocValues(lengthField);
+		} else {
+			norms = needsScores ? reader.getNormValues(field) : null;
+		}
+	}
+
+	/** Returns the wrapped {@link SimScorer}. */
+	public SimScorer getSimScorer() {
+		return scorer;
+	}
+
+	private long getNormValue(int doc) throws IOException {
+		if (norms == null) {
+			return 1L;
+		}
+		boolean found = norms.advanceExact(doc);
+		if (exactLengths) {
+			// Documents without the field have no length
+			return IndriSimilarity.exactLengthNorm(found ? norms.longValue() : 0L);
+		}
+		return found ? norms.longValue() : 0L;
+	}
+
+	/** Score the provided document assuming the given term document frequency. */
+	public float score(int doc, float freq) throws IOException {
+		return scorer.score(freq, getNormValue(doc));
+	}
+
+	/** Explain the score for the provided document assuming the given term document frequency. */
+	public Explanation explain(int doc, Explanation freqExpl) throws IOException {
+		return scorer.explain(freqExpl, getNormValue(doc));
+	}
+
+}
@@ -12,8 +12,6 @@
 package org.lemurproject.lucindri.searcher;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.List;
 
 import org.apache.lucene.search.ScoreMode;
@@ -28,28 +26,29 @@ public class IndriMaxScorer extends IndriDisjunctionScorer {
 	}
 
 	@Override
-	public float score(List<Scorer> subScorers) throws IOException {
-		int docId = this.docID();
-		return scoreDoc(subScorers, docId);
+	float scoreDoc(int docId) throws IOException {
+		float score = Float.NaN;
+		for (int i = 0; i < scorers.length; i++) {
+			Scorer scorer = scorers[i];
+			float subScore = scorer.docID() == docId ? scorer.score() : scorer.smoothingScore(docId);
+			// Float.compare orders like Collections.max did, with NaN above everything
+			if (i == 0 || Float.compare(subScore, score) > 0) {
+				score = subScore;
+			}
+		}
+		return score;
 	}
 
 	@Override
-	public float smoothingScore(List<Scorer> subScorers, int docId) throws IOException {
-		return scoreDoc(subScorers, docId);
-	}
-
-	private float scoreDoc(List<Scorer> subScorers, int docId) throws IOException {
-		List<Float> scoreArray = new ArrayList<>();
-		for (Scorer scorer : subScorers) {
-			int scorerDocId = scorer.docID();
-			if (docId == scorerDocId) {
-				scoreArray.add(scorer.score());
-			} else {
-				scoreArray.add(scorer.smoothingScore(docId));
+	double combineBounds(float[] clauseBounds) {
+		float bound = Float.NEGATIVE_INFINITY;
+		for (float clauseBound : clauseBounds) {
+			if (Float.isNaN(clauseBound)) {
+				return Double.POSITIVE_INFINITY;
 			}
+			bound = Math.max(bound, clauseBound);
 		}
-		float score = Collections.max(scoreArray);
-		return (float) (score);
+		return bound;
 	}
 
 }
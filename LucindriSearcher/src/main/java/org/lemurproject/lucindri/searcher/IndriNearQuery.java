@@ -28,6 +28,20 @@ public class IndriNearQuery extends IndriProximityQuery {
 		this.distance = distance;
 	}
 
+	public int getDistance() {
+		return distance;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return super.equals(o) && distance == ((IndriNearQuery) o).distance;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * super.hashCode() + distance;
+	}
+
 	@Override
 	public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
 		return new IndriNearWeight(this, searcher, getField(), distance, boost);
@@ -26,27 +26,29 @@ public class IndriOrScorer extends IndriDisjunctionScorer {
 	}
 
 	@Override
-	public float score(List<Scorer> subScorers) throws IOException {
-		int docId = this.docID();
-		return scoreDoc(subScorers, docId);
+	float scoreDoc(int docId) throws IOException {
+		double score = 1;
+		for (Scorer scorer : scorers) {
+			float subScore = scorer.docID() == docId ? scorer.score() : scorer.smoothingScore(docId);
+			score *= (1 - Math.exp(subScore));
+		}
+		return (float) (Math.log(1.0 - score));
 	}
 
+	/**
+	 * The score only grows with the scores of the clauses while they are log
+	 * probabilities, at most zero.
+	 */
 	@Override
-	public float smoothingScore(List<Scorer> subScorers, int docId) throws IOException {
-		return scoreDoc(subScorers, docId);
-	}
-
-	private float scoreDoc(List<Scorer> subScorers, int docId) throws IOException {
+	double combineBounds(float[] clauseBounds) {
 		double score = 1;
-		for (Scorer scorer : subScorers) {
-			int scorerDocId = scorer.docID();
-			if (docId == scorerDocId) {
-				score *= (1 - Math.exp(scorer.score()));
-			} else {
-				score *= (1 - Math.exp(scorer.smoothingScore(docId)));
+		for (float bound : clauseBounds) {
+			if (!(bound <= 0)) {
+				return Double.POSITIVE_INFINITY;
 			}
+			score *= (1 - Math.exp(bound));
 		}
-		return (float) (Math.log(1.0 - score));
+		return Math.log(1.0 - score);
 	}
 
 }
@@ -0,0 +1,83 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Lazily evaluates an ordered window (#N / #odN) over its child iterators.
+ */
+public class IndriOrderedWindowEnum extends IndriWindowEnum {
+
+	private final int[] numPostings;
+	private final int[] nextStartPositions;
+	private final int[] nextEndPositions;
+
+	public IndriOrderedWindowEnum(List<IndriDocAndPostingsIterator> iterators, int distance, String field) {
+		super(iterators, distance, field);
+		numPostings = new int[iterators.size()];
+		nextStartPositions = new int[iterators.size()];
+		nextEndPositions = new int[iterators.size()];
+	}
+
+	@Override
+	protected void addExtents(int currentDocID, IndriInvertedList docList) throws IOException {
+		IndriDocAndPostingsIterator iterator0 = iterators.get(0);
+		for (int j = 0; j < iterators.size(); j++) {
+			numPostings[j] = 0;
+			// Before any position, so that the first one is read even at position 0
+			nextStartPositions[j] = -1;
+			nextEndPositions[j] = -1;
+		}
+		boolean locationMatch = true;
+		// Iterate over the first postings in the window
+		for (int i = 0; i < iterator0.freq(); i++) {
+			nextStartPositions[0] = iterator0.nextPosition();
+			nextEndPositions[0] = iterator0.endPosition();
+			numPostings[0] = i;
+			// Iterate over the remaining terms/clauses in the window
+			for (int j = 1; j < iterators.size(); j++) {
+				IndriDocAndPostingsIterator iteratorj = iterators.get(j);
+				// Increment the next posting until it is greater than the one before it
+				while (nextStartPositions[j] < nextEndPositions[j - 1] && numPostings[j] < iteratorj.freq()) {
+					nextStartPositions[j] = iteratorj.nextPosition();
+					nextEndPositions[j] = iteratorj.endPosition();
+					numPostings[j]++;
+				}
+
+				// Check the distance between term postings
+				if (nextEndPositions[j - 1] >= nextStartPositions[j]
+						|| nextEndPositions[j - 1] < (nextStartPositions[j] - distance)) {
+					locationMatch = false;
+				}
+			}
+			if (locationMatch) {
+				docList.addPosting(currentDocID, nextStartPositions[0], nextEndPositions[iterators.size() - 1]);
+
+				for (int j = 1; j < iterators.size(); j++) {
+					IndriDocAndPostingsIterator iteratorj = iterators.get(j);
+					if (numPostings[j] < iteratorj.freq()) {
+						nextStartPositions[j] = iteratorj.nextPosition();
+						nextEndPositions[j] = iteratorj.endPosition();
+						numPostings[j]++;
+					} else {
+						nextStartPositions[j] = -2 * distance;
+						nextEndPositions[j] = -2 * distance;
+					}
+				}
+			}
+			locationMatch = true;
+		}
+	}
+
+}
@@ -0,0 +1,173 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.util.RamUsageEstimator;
+
+/**
+ * Least recently used cache of the materialized extents of proximity
+ * operators, shared by all queries run on a searcher. Entries are keyed by the
+ * proximity query, which includes the operator, its distance, its field and
+ * its clauses, and by the core of the leaf. The cache is bounded by the memory
+ * its inverted lists use, and entries of a leaf are dropped when the leaf is
+ * closed.
+ */
+public class IndriProximityListCache {
+
+	// Rough size of an entry besides its inverted list
+	private static final long ENTRY_RAM_BYTES_USED = 4 * RamUsageEstimator.NUM_BYTES_OBJECT_HEADER
+			+ 8 * RamUsageEstimator.NUM_BYTES_OBJECT_REF;
+
+	private final long maxRamBytes;
+	private final Map<CacheKey, IndriInvertedList> cache;
+	private final Set<IndexReader.CacheKey> coreKeys;
+	private long ramBytesUsed;
+	private long hitCount;
+	private long missCount;
+	private long evictionCount;
+
+	public IndriProximityListCache(long maxRamBytes) {
+		this.maxRamBytes = maxRamBytes;
+		cache = new LinkedHashMap<>(16, 0.75f, true);
+		coreKeys = new HashSet<>();
+	}
+
+	/**
+	 * Returns the cached extents of the query in the leaf, or null if they are
+	 * not cached. The returned list is shared and must not be modified.
+	 */
+	public synchronized IndriInvertedList get(Query query, LeafReaderContext context) {
+		IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+		IndriInvertedList invList = null;
+		if (cacheHelper != null) {
+			invList = cache.get(new CacheKey(query, cacheHelper.getKey()));
+		}
+		if (invList == null) {
+			missCount++;
+		} else {
+			hitCount++;
+		}
+		return invList;
+	}
+
+	/**
+	 * Caches the extents of the query in the leaf, evicting the least recently
+	 * used entries to stay within the memory bound. Lists that are larger than
+	 * the whole cache, and leaves without a core cache key, are not cached.
+	 */
+	public synchronized void put(Query query, LeafReaderContext context, IndriInvertedList invList) {
+		IndexReader.CacheHelper cacheHelper = context.reader().getCoreCacheHelper();
+		long entryRamBytes = ramBytesUsed(invList);
+		if (cacheHelper == null || entryRamBytes > maxRamBytes) {
+			return;
+		}
+		IndexReader.CacheKey coreKey = cacheHelper.getKey();
+		if (coreKeys.add(coreKey)) {
+			cacheHelper.addClosedListener(this::clearCoreKey);
+		}
+		IndriInvertedList previous = cache.put(new CacheKey(query, coreKey), invList);
+		if (previous != null) {
+			ramBytesUsed -= ramBytesUsed(previous);
+		}
+		ramBytesUsed += entryRamBytes;
+
+		Iterator<IndriInvertedList> eldest = cache.values().iterator();
+		while (ramBytesUsed > maxRamBytes) {
+			ramBytesUsed -= ramBytesUsed(eldest.next());
+			eldest.remove();
+			evictionCount++;
+		}
+	}
+
+	/** Drops the entries of a leaf core that was closed. */
+	public synchronized void clearCoreKey(IndexReader.CacheKey coreKey) {
+		Iterator<Map.Entry<CacheKey, IndriInvertedList>> entries = cache.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<CacheKey, IndriInvertedList> entry = entries.next();
+			if (entry.getKey().coreKey == coreKey) {
+				ramBytesUsed -= ramBytesUsed(entry.getValue());
+				entries.remove();
+			}
+		}
+		coreKeys.remove(coreKey);
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+		ramBytesUsed = 0;
+	}
+
+	private static long ramBytesUsed(IndriInvertedList invList) {
+		return ENTRY_RAM_BYTES_USED + invList.ramBytesUsed();
+	}
+
+	/** Returns the memory used by the cached entries, in bytes. */
+	public synchronized long getRamBytesUsed() {
+		return ramBytesUsed;
+	}
+
+	public long getMaxRamBytes() {
+		return maxRamBytes;
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	/** Returns the number of entries evicted to stay within the memory bound. */
+	public synchronized long getEvictionCount() {
+		return evictionCount;
+	}
+
+	private static final class CacheKey {
+		private final Query query;
+		private final IndexReader.CacheKey coreKey;
+
+		CacheKey(Query query, IndexReader.CacheKey coreKey) {
+			this.query = query;
+			this.coreKey = coreKey;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) o;
+			return coreKey == other.coreKey && query.equals(other.query);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(query, coreKey);
+		}
+	}
+
+}
@@ -13,6 +13,7 @@ package org.lemurproject.lucindri.searcher;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Objects;
 
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.IndexSearcher;
@@ -35,4 +36,14 @@ public abstract class IndriProximityQuery extends IndriQuery {
 		return this.field;
 	}
 
+	@Override
+	public boolean equals(Object o) {
+		return super.equals(o) && Objects.equals(field, ((IndriProximityQuery) o).field);
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * (31 * super.hashCode() + classHash()) + Objects.hashCode(field);
+	}
+
 }
@@ -0,0 +1,254 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.BooleanClause;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Pseudo-relevance feedback with Indri's relevance model (RM3). The top
+ * {@code fbDocs} documents of a query are taken as relevant, each weighted by
+ * the likelihood of the query, exp(score). The {@code fbTerms} terms most
+ * likely under the mixture of their language models become a #weight query,
+ * which is interpolated with the original query:
+ *
+ * <pre>
+ * #weight(fbOrigWeight query (1 - fbOrigWeight) #weight(p1 t1 p2 t2 ...))
+ * </pre>
+ *
+ * The expansion terms are taken from the field of the query's terms. The terms
+ * of a document are read from its term vector, so the index must be built with
+ * storeDocumentVectors.
+ */
+public class IndriRelevanceModel {
+
+	// Heaviest terms first, ties in term order
+	private static final Comparator<Map.Entry<String, Double>> TERM_WEIGHT_ORDER = Map.Entry
+			.<String, Double>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+	private final IndexSearcher searcher;
+	private final String defaultField;
+	private final int fbDocs;
+	private final int fbTerms;
+	private final float fbOrigWeight;
+	private final float fbMu;
+	private final int fbCandidates;
+
+	/**
+	 * @param searcher     searcher of an index with document vectors
+	 * @param defaultField field the expansion terms are taken from when the terms
+	 *                     of the query are not all in one field
+	 * @param fbDocs       number of feedback documents
+	 * @param fbTerms      number of expansion terms
+	 * @param fbOrigWeight weight of the original query in the expanded query
+	 * @param fbMu         Dirichlet smoothing of the feedback document models, 0
+	 *                     for maximum likelihood
+	 * @param fbCandidates number of terms with the highest maximum likelihood
+	 *                     weights that are smoothed, 0 for every term
+	 */
+	public IndriRelevanceModel(IndexSearcher searcher, String defaultField, int fbDocs, int fbTerms,
+			float fbOrigWeight, float fbMu, int fbCandidates) {
+		this.searcher = searcher;
+		this.defaultField = defaultField;
+		this.fbDocs = fbDocs;
+		this.fbTerms = fbTerms;
+		this.fbOrigWeight = fbOrigWeight;
+		this.fbMu = fbMu;
+		this.fbCandidates = fbCandidates;
+	}
+
+	/**
+	 * Runs the query to find the feedback documents and returns the expanded
+	 * query.
+	 */
+	public Query expand(Query query) throws IOException {
+		return expand(query, searcher.search(query, fbDocs));
+	}
+
+	/**
+	 * Returns the query expanded with the feedback documents in
+	 * {@code topDocs}, or the query itself if they have no terms.
+	 */
+	public Query expand(Query query, TopDocs topDocs) throws IOException {
+		String field = getQueryField(query);
+		Map<String, Double> termWeights = getTermWeights(topDocs, field);
+		if (termWeights.isEmpty()) {
+			return query;
+		}
+
+		PriorityQueue<Map.Entry<String, Double>> topTerms = new PriorityQueue<>(fbTerms + 1,
+				TERM_WEIGHT_ORDER.reversed());
+		for (Map.Entry<String, Double> entry : termWeights.entrySet()) {
+			topTerms.add(entry);
+			if (topTerms.size() > fbTerms) {
+				topTerms.poll();
+			}
+		}
+		double weightSum = 0;
+		for (Map.Entry<String, Double> entry : topTerms) {
+			weightSum += entry.getValue();
+		}
+		List<Map.Entry<String, Double>> expansionTerms = new ArrayList<>(topTerms);
+		expansionTerms.sort(TERM_WEIGHT_ORDER);
+		List<BooleanClause> termClauses = new ArrayList<>(expansionTerms.size());
+		for (Map.Entry<String, Double> entry : expansionTerms) {
+			Query termQuery = new IndriTermQuery(new Term(field, entry.getKey()));
+			termClauses.add(new BooleanClause(
+					new BoostQuery(termQuery, (float) (entry.getValue() / weightSum)), Occur.SHOULD));
+		}
+
+		List<BooleanClause> clauses = new ArrayList<>(2);
+		clauses.add(new BooleanClause(new BoostQuery(query, fbOrigWeight), Occur.SHOULD));
+		clauses.add(new BooleanClause(new BoostQuery(new IndriAndQuery(termClauses), 1 - fbOrigWeight),
+				Occur.SHOULD));
+		return new IndriAndQuery(clauses);
+	}
+
+	/**
+	 * Returns the field of the terms of the query, or the default field if they
+	 * are in several fields.
+	 */
+	private String getQueryField(Query query) {
+		Set<String> fields = new HashSet<>();
+		addFields(query, fields);
+		return fields.size() == 1 ? fields.iterator().next() : defaultField;
+	}
+
+	private static void addFields(Query query, Set<String> fields) {
+		if (query instanceof BoostQuery) {
+			addFields(((BoostQuery) query).getQuery(), fields);
+		} else if (query instanceof IndriQuery) {
+			for (BooleanClause clause : (IndriQuery) query) {
+				addFields(clause.getQuery(), fields);
+			}
+		} else if (query instanceof IndriTermQuery) {
+			// Bigram terms stand for their field
+			fields.add(((IndriTermQuery) query).getScoringField());
+		}
+	}
+
+	/**
+	 * Returns the relevance model, sum over the feedback documents D of
+	 * P(w|D) exp(score(D)), of the terms w that occur in them.
+	 * <p>
+	 * With smoothing, the weight of a term is its maximum likelihood weight, sum
+	 * of freq(w, D) / (|D| + fbMu) exp(score(D)), plus its collection probability
+	 * times the same sum of fbMu / (|D| + fbMu) for every term. Looking up the
+	 * collection frequency of a term seeks the term dictionary of every segment.
+	 * Like Indri, every term is smoothed unless {@code fbCandidates} limits the
+	 * lookups to the terms with the highest maximum likelihood weights, and the
+	 * others are then left out of the model.
+	 */
+	private Map<String, Double> getTermWeights(TopDocs topDocs, String field) throws IOException {
+		IndexReader reader = searcher.getIndexReader();
+		FieldInfo fieldInfo = FieldInfos.getMergedFieldInfos(reader).fieldInfo(field);
+		if (fieldInfo == null || !fieldInfo.hasVectors()) {
+			throw new IllegalStateException(
+					"field \"" + field + "\" was indexed without document vectors (storeDocumentVectors)");
+		}
+		ScoreDoc[] scoreDocs = topDocs.scoreDocs;
+		if (scoreDocs.length > fbDocs) {
+			scoreDocs = Arrays.copyOf(scoreDocs, fbDocs);
+		}
+		// Scores are log likelihoods, shifted so that the best document has weight 1
+		float maxScore = Float.NEGATIVE_INFINITY;
+		for (ScoreDoc scoreDoc : scoreDocs) {
+			maxScore = Math.max(maxScore, scoreDoc.score);
+		}
+		// Term vectors are read in index order
+		scoreDocs = scoreDocs.clone();
+		Arrays.sort(scoreDocs, Comparator.comparingInt(scoreDoc -> scoreDoc.doc));
+
+		Map<String, Double> termWeights = new HashMap<>();
+		// Sum over the feedback documents of the weight every term gets from smoothing
+		double smoothingWeight = 0;
+		List<String> docTerms = new ArrayList<>();
+		List<Long> docFreqs = new ArrayList<>();
+		for (ScoreDoc scoreDoc : scoreDocs) {
+			docTerms.clear();
+			docFreqs.clear();
+			long docLength = 0;
+			Terms vector = reader.getTermVector(scoreDoc.doc, field);
+			if (vector != null) {
+				TermsEnum termsEnum = vector.iterator();
+				BytesRef text;
+				while ((text = termsEnum.next()) != null) {
+					docTerms.add(text.utf8ToString());
+					docFreqs.add(termsEnum.totalTermFreq());
+					docLength += termsEnum.totalTermFreq();
+				}
+			}
+			if (docLength + fbMu == 0) {
+				continue;
+			}
+			double docWeight = Math.exp(scoreDoc.score - maxScore);
+			for (int i = 0; i < docTerms.size(); i++) {
+				termWeights.merge(docTerms.get(i), docWeight * docFreqs.get(i) / (docLength + fbMu), Double::sum);
+			}
+			smoothingWeight += docWeight * fbMu / (docLength + fbMu);
+		}
+		if (fbMu <= 0 || termWeights.isEmpty()) {
+			return termWeights;
+		}
+
+		List<Map.Entry<String, Double>> candidates = new ArrayList<>(termWeights.entrySet());
+		if (fbCandidates > 0 && fbCandidates < candidates.size()) {
+			candidates.sort(TERM_WEIGHT_ORDER);
+			candidates = candidates.subList(0, fbCandidates);
+		}
+		CollectionStatistics collectionStats = searcher.collectionStatistics(field);
+		Map<String, Double> smoothedWeights = new HashMap<>();
+		for (Map.Entry<String, Double> candidate : candidates) {
+			double collectionProbability = (double) getCollectionFrequency(new Term(field, candidate.getKey()))
+					/ collectionStats.sumTotalTermFreq();
+			smoothedWeights.put(candidate.getKey(), candidate.getValue() + smoothingWeight * collectionProbability);
+		}
+		return smoothedWeights;
+	}
+
+	/**
+	 * Returns the number of times the term occurs in the index. The TermStates of
+	 * an {@link IndriIndexSearcher} are cached, and the expanded query finds the
+	 * ones of its terms there.
+	 */
+	private long getCollectionFrequency(Term term) throws IOException {
+		if (searcher instanceof IndriIndexSearcher) {
+			return ((IndriIndexSearcher) searcher).getTermStates(term, true).totalTermFreq();
+		}
+		return searcher.getIndexReader().totalTermFreq(term);
+	}
+
+}
@@ -0,0 +1,146 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.Similarity;
+import org.lemurproject.lucindri.searcher.similarities.IndriSimilarity;
+
+/**
+ * Least recently used cache of the top hits of queries. Entries are keyed by
+ * the query tree, which Indri queries compare by operator, weights and terms,
+ * by the smoothing rule and its parameters, and by the number of hits. The
+ * cache can be shared by the searchers of successive readers of an index. It
+ * is cleared when it is used with a reader other than the one its hits were
+ * found in, for example after the index was reopened.
+ */
+public class IndriResultCache {
+
+	private final Map<CacheKey, TopDocs> cache;
+	// The reader the cached hits were found in
+	private Object readerKey;
+	private long hitCount;
+	private long missCount;
+
+	/** Creates a cache of the hits of at most {@code maxSize} queries. */
+	public IndriResultCache(int maxSize) {
+		cache = new LinkedHashMap<CacheKey, TopDocs>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<CacheKey, TopDocs> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns a copy of the cached top {@code numHits} hits of the query, or null
+	 * if they are not cached for this reader and similarity.
+	 */
+	public synchronized TopDocs get(IndexReader reader, Similarity similarity, Query query, int numHits) {
+		checkReader(reader);
+		TopDocs topDocs = cache.get(new CacheKey(query, getSimilarityKey(similarity), numHits));
+		if (topDocs == null) {
+			missCount++;
+			return null;
+		}
+		hitCount++;
+		return copyOf(topDocs);
+	}
+
+	public synchronized void put(IndexReader reader, Similarity similarity, Query query, int numHits,
+			TopDocs topDocs) {
+		checkReader(reader);
+		cache.put(new CacheKey(query, getSimilarityKey(similarity), numHits), copyOf(topDocs));
+	}
+
+	private void checkReader(IndexReader reader) {
+		IndexReader.CacheHelper cacheHelper = reader.getReaderCacheHelper();
+		Object key = cacheHelper != null ? cacheHelper.getKey() : reader;
+		if (key != readerKey) {
+			cache.clear();
+			readerKey = key;
+		}
+	}
+
+	/**
+	 * Indri similarities that score the same way share a key. Other similarities
+	 * are only equal to themselves.
+	 */
+	private static Object getSimilarityKey(Similarity similarity) {
+		if (similarity instanceof IndriSimilarity) {
+			return ((IndriSimilarity) similarity).getScoringKey();
+		}
+		return similarity;
+	}
+
+	// Callers may modify the hits they are given
+	private static TopDocs copyOf(TopDocs topDocs) {
+		ScoreDoc[] scoreDocs = new ScoreDoc[topDocs.scoreDocs.length];
+		for (int i = 0; i < scoreDocs.length; i++) {
+			ScoreDoc scoreDoc = topDocs.scoreDocs[i];
+			scoreDocs[i] = new ScoreDoc(scoreDoc.doc, scoreDoc.score, scoreDoc.shardIndex);
+		}
+		return new TopDocs(topDocs.totalHits, scoreDocs);
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+	private static final class CacheKey {
+		private final Query query;
+		private final Object similarityKey;
+		private final int numHits;
+
+		CacheKey(Query query, Object similarityKey, int numHits) {
+			this.query = query;
+			this.similarityKey = similarityKey;
+			this.numHits = numHits;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof CacheKey)) {
+				return false;
+			}
+			CacheKey other = (CacheKey) o;
+			return numHits == other.numHits && similarityKey.equals(other.similarityKey) && query.equals(other.query);
+		}
+
+		@Override
+		public int hashCode() {
+			return Objects.hash(query, similarityKey, numHits);
+		}
+	}
+
+}
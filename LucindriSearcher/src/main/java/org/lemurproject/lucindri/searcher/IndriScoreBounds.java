@@ -11,35 +11,20 @@
  */
 package org.lemurproject.lucindri.searcher;
 
-public class IndriDocumentPosting {
-
-	private int start;
-	private int end;
-
-	public IndriDocumentPosting(Integer start, Integer end) {
-		this.start = start.intValue();
-		this.end = end.intValue();
-	}
-
-	public IndriDocumentPosting(int start, int end) {
-		this.start = start;
-		this.end = end;
-	}
-
-	public int getStart() {
-		return start;
-	}
-
-	public void setStart(int start) {
-		this.start = start;
-	}
-
-	public int getEnd() {
-		return end;
-	}
+import java.io.IOException;
+
+/**
+ * Implemented by Indri scorers whose
+ * {@link org.apache.lucene.search.Scorer#getMaxScore(int)} is a real upper bound
+ * of their scores, so that an enclosing #combine can skip documents that cannot
+ * be competitive. Indri scorers also give documents they do not match a
+ * smoothing score, which needs a bound of its own.
+ */
+public interface IndriScoreBounds {
 
-	public void setEnd(int end) {
-		this.end = end;
-	}
+	/**
+	 * Returns an upper bound of the smoothing score of any document.
+	 */
+	float getMaxSmoothingScore() throws IOException;
 
 }
@@ -16,8 +16,17 @@ import java.io.StringReader;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Stream;
 
 import javax.xml.parsers.DocumentBuilder;
@@ -25,8 +34,9 @@ import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.lucene.analysis.Analyzer;
-import org.apache.lucene.document.Document;
 import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FieldInfo;
+import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.MultiReader;
 import org.apache.lucene.search.IndexSearcher;
@@ -36,6 +46,7 @@ import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.FSDirectory;
+import org.lemurproject.lucindri.analyzer.BigramAnalyzerWrapper;
 import org.lemurproject.lucindri.analyzer.EnglishAnalyzerConfigurable;
 import org.lemurproject.lucindri.searcher.domain.JsonIndriQuery;
 import org.lemurproject.lucindri.searcher.domain.JsonIndriQueryWrapper;
@@ -49,7 +60,9 @@ import org.xml.sax.SAXException;
 
 public class IndriSearch {
 
-	private final static String EXTERNALID_FIELD = "externalId";
+	private final static String FULLTEXT_FIELD = "fulltext";
+	// Queries submitted to each worker thread ahead of the oldest unfinished one
+	private final static int QUERIES_IN_FLIGHT_PER_THREAD = 2;
 
 	public static void main(String[] args)
 			throws Exception {
@@ -86,56 +99,102 @@ public class IndriSearch {
 				Directory dir = FSDirectory.open(Paths.get(indexDir));
 				reader = DirectoryReader.open(dir);
 			}
-			searcher = new IndriIndexSearcher(reader);
-			if (reader == null || searcher == null) {
-				throw new Exception("Index Directory was not properly set");
-			}
-
-			Similarity similarity = new IndriDirichletSimilarity();
-			if (queryWrapper.getRule() != null) {
-				String similarityString = queryWrapper.getRule().toLowerCase();
-				String[] similarityParams = similarityString.split(":");
-				String similarityName = similarityParams[0];
-				String parameter = null;
-				if (similarityParams.length > 1) {
-					parameter = similarityParams[1];
+			ExecutorService segmentExecutor = null;
+			// The pool threads would keep the JVM alive if a query failed
+			try {
+				if (queryWrapper.getSegmentThreads() != null && queryWrapper.getSegmentThreads().intValue() > 1) {
+					segmentExecutor = Executors.newFixedThreadPool(queryWrapper.getSegmentThreads().intValue());
+					searcher = new IndriIndexSearcher(reader, segmentExecutor);
+				} else {
+					searcher = new IndriIndexSearcher(reader);
+				}
+				if (reader == null || searcher == null) {
+					throw new Exception("Index Directory was not properly set");
+				}
+				if (queryWrapper.getTermCacheSize() != null) {
+					((IndriIndexSearcher) searcher).setTermCacheSize(queryWrapper.getTermCacheSize().intValue());
 				}
-				if (similarityName.equals("dirichlet") || similarityName.equals("dir") || similarityName.equals("d")) {
-					if (parameter != null) {
-						float mu = Float.valueOf(parameter).floatValue();
-						similarity = new IndriDirichletSimilarity(mu);
+				if (queryWrapper.getProximityCacheSize() != null) {
+					// Specified in megabytes
+					((IndriIndexSearcher) searcher)
+							.setProximityCacheSize(queryWrapper.getProximityCacheSize().longValue() * 1024 * 1024);
+				}
+				if (queryWrapper.getResultCacheSize() != null && queryWrapper.getResultCacheSize().intValue() > 0) {
+					((IndriIndexSearcher) searcher)
+							.setResultCache(new IndriResultCache(queryWrapper.getResultCacheSize().intValue()));
+				}
+
+				Similarity similarity = new IndriDirichletSimilarity();
+				if (queryWrapper.getRule() != null) {
+					String similarityString = queryWrapper.getRule().toLowerCase();
+					String[] similarityParams = similarityString.split(":");
+					String similarityName = similarityParams[0];
+					String parameter = null;
+					if (similarityParams.length > 1) {
+						parameter = similarityParams[1];
 					}
-				} else if (similarityName.equals("jelinek-mercer") || similarityName.equals("jm")
-						|| similarityName.equals("linear")) {
-					similarity = new IndriJelinekMercerSimilarity();
-					if (parameter != null) {
-						float lambda = Float.valueOf(parameter).floatValue();
-						similarity = new IndriJelinekMercerSimilarity(lambda);
+					if (similarityName.equals("dirichlet") || similarityName.equals("dir")
+							|| similarityName.equals("d")) {
+						if (parameter != null) {
+							float mu = Float.valueOf(parameter).floatValue();
+							similarity = new IndriDirichletSimilarity(mu);
+						}
+					} else if (similarityName.equals("jelinek-mercer") || similarityName.equals("jm")
+							|| similarityName.equals("linear")) {
+						similarity = new IndriJelinekMercerSimilarity();
+						if (parameter != null) {
+							float lambda = Float.valueOf(parameter).floatValue();
+							similarity = new IndriJelinekMercerSimilarity(lambda);
+						}
 					}
 				}
-			}
-			searcher.setSimilarity(similarity);
+				searcher.setSimilarity(similarity);
 
-			for (JsonIndriQuery query : queryWrapper.getQueries()) {
-				IndriQueryParser queryParser = new IndriQueryParser();
-				Query test = queryParser.parseQuery(query.getText());
+				boolean cacheExternalIds = queryWrapper.getCacheExternalIds() != null
+						&& queryWrapper.getCacheExternalIds().booleanValue();
+				IndriExternalIds externalIds = new IndriExternalIds(reader, cacheExternalIds);
 
-				if (test != null) {
-					TopDocs hitDocs = searcher.search(test, queryWrapper.getCount());
-					ScoreDoc[] scoreDocs = hitDocs.scoreDocs;
+				Set<String> bigramFields = Collections.emptySet();
+				if (queryWrapper.getBigrams() == null || queryWrapper.getBigrams().booleanValue()) {
+					bigramFields = getBigramFields(reader);
+				}
 
-					int rank = 0;
-					for (ScoreDoc scoreDoc : scoreDocs) {
-						rank++;
-						int docid = scoreDoc.doc;
+				IndriRelevanceModel relevanceModel = null;
+				if (queryWrapper.getFbDocs() != null && queryWrapper.getFbDocs().intValue() > 0) {
+					int fbTerms = queryWrapper.getFbTerms() != null ? queryWrapper.getFbTerms().intValue() : 10;
+					float fbOrigWeight = queryWrapper.getFbOrigWeight() != null
+							? queryWrapper.getFbOrigWeight().floatValue()
+							: 0.5f;
+					float fbMu = queryWrapper.getFbMu() != null ? queryWrapper.getFbMu().floatValue() : 0;
+					int fbCandidates = queryWrapper.getFbCandidates() != null
+							? queryWrapper.getFbCandidates().intValue()
+							: 0;
+					relevanceModel = new IndriRelevanceModel(searcher, FULLTEXT_FIELD,
+							queryWrapper.getFbDocs().intValue(), fbTerms, fbOrigWeight, fbMu, fbCandidates);
+				}
 
-						Document doc = searcher.doc(docid);
-						String fileName = doc.get(EXTERNALID_FIELD);
+				int threads = 1;
+				if (queryWrapper.getThreads() != null && queryWrapper.getThreads().intValue() > 1) {
+					threads = queryWrapper.getThreads().intValue();
+				}
 
-						System.out.println(String.join(" ", query.getNumber(), "Q0", fileName, String.valueOf(rank),
-								String.valueOf(scoreDoc.score), "lucene"));
+				try (TrecRunWriter runWriter = TrecRunWriter.open(queryWrapper.getRunFile())) {
+					if (threads == 1) {
+						List<JsonIndriQuery> queries = queryWrapper.getQueries();
+						for (int i = 0; i < queries.size(); i++) {
+							runQuery(searcher, queries.get(i), queryWrapper.getCount(), externalIds, bigramFields,
+									relevanceModel, runWriter, i);
+						}
+					} else {
+						runQueries(searcher, queryWrapper.getQueries(), queryWrapper.getCount(), threads, externalIds,
+								bigramFields, relevanceModel, runWriter);
 					}
 				}
+			} finally {
+				if (segmentExecutor != null) {
+					segmentExecutor.shutdown();
+				}
+				reader.close();
 			}
 		} else {
 			System.out.println("Could not parse query parameters.  Please provide XML or json query parameters.");
@@ -143,6 +202,99 @@ public class IndriSearch {
 
 	}
 
+	/**
+	 * Runs the queries concurrently on a fixed pool of worker threads that share
+	 * the searcher. The run writer writes the results in the order the queries
+	 * were given, regardless of the order in which the workers finish them.
+	 * Queries are submitted in a window of a few per thread that only moves on
+	 * when its oldest query is done, so that a slow query holds back the
+	 * submission of the rest rather than letting the results that the run writer
+	 * has to buffer behind it grow with the size of the query file.
+	 */
+	private static void runQueries(IndexSearcher searcher, List<JsonIndriQuery> queries, int count, int threads,
+			IndriExternalIds externalIds, Set<String> bigramFields, IndriRelevanceModel relevanceModel,
+			TrecRunWriter runWriter) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		try {
+			int maxInFlight = threads * QUERIES_IN_FLIGHT_PER_THREAD;
+			Deque<Future<?>> results = new ArrayDeque<>(maxInFlight);
+			for (int i = 0; i < queries.size(); i++) {
+				if (results.size() >= maxInFlight) {
+					waitForQuery(results.removeFirst());
+				}
+				JsonIndriQuery query = queries.get(i);
+				int sequence = i;
+				results.addLast(executor.submit(() -> {
+					runQuery(searcher, query, count, externalIds, bigramFields, relevanceModel, runWriter, sequence);
+					return null;
+				}));
+			}
+			while (!results.isEmpty()) {
+				waitForQuery(results.removeFirst());
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static void waitForQuery(Future<?> result) throws IOException, InterruptedException {
+		try {
+			result.get();
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw (IOException) e.getCause();
+			}
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Parses and runs a single query, expanded with the relevance model if there
+	 * is one, and writes its results as the block at position {@code sequence}
+	 * of the run.
+	 */
+	private static void runQuery(IndexSearcher searcher, JsonIndriQuery query, int count,
+			IndriExternalIds externalIds, Set<String> bigramFields, IndriRelevanceModel relevanceModel,
+			TrecRunWriter runWriter, int sequence) throws IOException {
+		IndriQueryParser queryParser = new IndriQueryParser();
+		queryParser.setBigramFields(bigramFields);
+		Query test = queryParser.parseQuery(query.getText());
+
+		StringBuilder results = TrecRunWriter.getBlockBuffer();
+		if (test != null) {
+			if (relevanceModel != null) {
+				test = relevanceModel.expand(test);
+			}
+			TopDocs hitDocs = searcher.search(test, count);
+			ScoreDoc[] scoreDocs = hitDocs.scoreDocs;
+			String[] fileNames = externalIds.get(scoreDocs);
+
+			int rank = 0;
+			for (ScoreDoc scoreDoc : scoreDocs) {
+				String fileName = fileNames[rank];
+				rank++;
+
+				TrecRunWriter.appendResult(results, query.getNumber(), fileName, rank, scoreDoc.score);
+			}
+		}
+		runWriter.write(sequence, results);
+	}
+
+	/**
+	 * Returns the fields of the index that were also indexed as bigrams of
+	 * adjacent terms.
+	 */
+	private static Set<String> getBigramFields(IndexReader reader) {
+		Set<String> bigramFields = new HashSet<>();
+		for (FieldInfo fieldInfo : FieldInfos.getMergedFieldInfos(reader)) {
+			if (fieldInfo.name.endsWith(BigramAnalyzerWrapper.BIGRAM_FIELD_SUFFIX)) {
+				bigramFields.add(fieldInfo.name.substring(0,
+						fieldInfo.name.length() - BigramAnalyzerWrapper.BIGRAM_FIELD_SUFFIX.length()));
+			}
+		}
+		return bigramFields;
+	}
+
 	private static boolean isXML(String text) {
 		if (!text.startsWith("<")) {
 			return false;
@@ -184,6 +336,67 @@ public class IndriSearch {
 			queryWrapper.setRule(doc.getElementsByTagName("rule").item(0).getTextContent());
 		}
 
+		if (doc.getElementsByTagName("runFile").getLength() > 0) {
+			queryWrapper.setRunFile(doc.getElementsByTagName("runFile").item(0).getTextContent().trim());
+		}
+
+		if (doc.getElementsByTagName("threads").getLength() > 0) {
+			queryWrapper.setThreads(Integer.valueOf(doc.getElementsByTagName("threads").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("segmentThreads").getLength() > 0) {
+			queryWrapper.setSegmentThreads(
+					Integer.valueOf(doc.getElementsByTagName("segmentThreads").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("termCacheSize").getLength() > 0) {
+			queryWrapper.setTermCacheSize(
+					Integer.valueOf(doc.getElementsByTagName("termCacheSize").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("proximityCacheSize").getLength() > 0) {
+			queryWrapper.setProximityCacheSize(
+					Integer.valueOf(doc.getElementsByTagName("proximityCacheSize").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("resultCacheSize").getLength() > 0) {
+			queryWrapper.setResultCacheSize(
+					Integer.valueOf(doc.getElementsByTagName("resultCacheSize").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("bigrams").getLength() > 0) {
+			queryWrapper.setBigrams(
+					Boolean.valueOf(doc.getElementsByTagName("bigrams").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("cacheExternalIds").getLength() > 0) {
+			queryWrapper.setCacheExternalIds(
+					Boolean.valueOf(doc.getElementsByTagName("cacheExternalIds").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("fbDocs").getLength() > 0) {
+			queryWrapper.setFbDocs(Integer.valueOf(doc.getElementsByTagName("fbDocs").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("fbTerms").getLength() > 0) {
+			queryWrapper
+					.setFbTerms(Integer.valueOf(doc.getElementsByTagName("fbTerms").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("fbOrigWeight").getLength() > 0) {
+			queryWrapper.setFbOrigWeight(
+					Float.valueOf(doc.getElementsByTagName("fbOrigWeight").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("fbMu").getLength() > 0) {
+			queryWrapper.setFbMu(Float.valueOf(doc.getElementsByTagName("fbMu").item(0).getTextContent().trim()));
+		}
+
+		if (doc.getElementsByTagName("fbCandidates").getLength() > 0) {
+			queryWrapper.setFbCandidates(
+					Integer.valueOf(doc.getElementsByTagName("fbCandidates").item(0).getTextContent().trim()));
+		}
+
 		List<JsonIndriQuery> queries = new ArrayList<>();
 		for (int i = 0; i < doc.getElementsByTagName("query").getLength(); i++) {
 			NodeList childNodes = doc.getElementsByTagName("query").item(i).getChildNodes();
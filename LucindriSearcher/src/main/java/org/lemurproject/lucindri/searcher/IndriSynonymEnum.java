@@ -0,0 +1,199 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Lazily evaluates a synonym (#syn) as the union of its child iterators. Doc
+ * ids are merged with a heap of the children ordered by their current doc,
+ * and the extents of a document are only merged when its positions are read.
+ */
+public class IndriSynonymEnum extends IndriDocAndPostingsIterator {
+
+	private final IndriDocAndPostingsIterator[] iterators;
+	// Heap of child indexes ordered by their current doc id
+	private final int[] heap;
+	private int heapSize;
+	private final long cost;
+	private int currentDocID;
+	// Extents of the current document, loaded when they are first needed
+	private final IndriInvertedList docList;
+	private boolean extentsLoaded;
+	private long[] extents;
+	private int postingIndex;
+	private int endPosition;
+
+	public IndriSynonymEnum(List<IndriDocAndPostingsIterator> iterators, String field) {
+		this.iterators = iterators.toArray(new IndriDocAndPostingsIterator[0]);
+		heap = new int[iterators.size()];
+		long cost = 0;
+		for (int i = 0; i < iterators.size(); i++) {
+			heap[i] = i;
+			cost += iterators.get(i).cost();
+		}
+		heapSize = iterators.size();
+		this.cost = cost;
+		currentDocID = -1;
+		docList = new IndriInvertedList(field);
+		extents = new long[16];
+		endPosition = -1;
+	}
+
+	@Override
+	public int docID() {
+		return currentDocID;
+	}
+
+	@Override
+	public int nextDoc() throws IOException {
+		return advance(currentDocID + 1);
+	}
+
+	@Override
+	public int advance(int target) throws IOException {
+		while (heapSize > 0 && iterators[heap[0]].docID() < target) {
+			if (iterators[heap[0]].advance(target) == DocIdSetIterator.NO_MORE_DOCS) {
+				heapSize--;
+				heap[0] = heap[heapSize];
+			}
+			downHeap();
+		}
+		currentDocID = heapSize == 0 ? DocIdSetIterator.NO_MORE_DOCS : iterators[heap[0]].docID();
+		docList.clear();
+		extentsLoaded = false;
+		postingIndex = 0;
+		endPosition = -1;
+		return currentDocID;
+	}
+
+	@Override
+	public long cost() {
+		return cost;
+	}
+
+	@Override
+	public int freq() throws IOException {
+		if (currentDocID == -1 || currentDocID == DocIdSetIterator.NO_MORE_DOCS) {
+			return 0;
+		}
+		if (!extentsLoaded) {
+			// The extents of a single child are already in order and free of
+			// duplicates, so its frequency can be used without reading positions
+			IndriDocAndPostingsIterator single = null;
+			for (int i = 0; i < heapSize; i++) {
+				if (iterators[heap[i]].docID() == currentDocID) {
+					if (single != null) {
+						loadExtents();
+						return docList.getCtf();
+					}
+					single = iterators[heap[i]];
+				}
+			}
+			return single.freq();
+		}
+		return docList.getCtf();
+	}
+
+	private void loadExtents() throws IOException {
+		int numExtents = 0;
+		for (int i = 0; i < heapSize; i++) {
+			IndriDocAndPostingsIterator iterator = iterators[heap[i]];
+			if (iterator.docID() == currentDocID) {
+				int freq = iterator.freq();
+				extents = ArrayUtil.grow(extents, numExtents + freq);
+				for (int j = 0; j < freq; j++) {
+					int startPostion = iterator.nextPosition();
+					int endPostion = iterator.endPosition();
+					// Packed as (start << 32 | end) so that sorting orders them by start
+					extents[numExtents++] = ((long) startPostion << 32) | (endPostion & 0xFFFFFFFFL);
+				}
+			}
+		}
+
+		Arrays.sort(extents, 0, numExtents);
+		for (int i = 0; i < numExtents; i++) {
+			docList.addPosting(currentDocID, (int) (extents[i] >>> 32), (int) extents[i]);
+		}
+		extentsLoaded = true;
+	}
+
+	/**
+	 * Increments to the next extent of the current document and returns its start
+	 * position
+	 */
+	@Override
+	public int nextPosition() throws IOException {
+		if (!extentsLoaded) {
+			if (currentDocID == -1 || currentDocID == DocIdSetIterator.NO_MORE_DOCS) {
+				return -1;
+			}
+			loadExtents();
+		}
+		int nextPosition = -1;
+		if (postingIndex < docList.getCtf()) {
+			nextPosition = docList.getStart(postingIndex);
+			endPosition = docList.getEnd(postingIndex);
+			postingIndex++;
+		}
+		return nextPosition;
+	}
+
+	@Override
+	public int endPosition() throws IOException {
+		return endPosition;
+	}
+
+	@Override
+	public int startOffset() throws IOException {
+		return 0;
+	}
+
+	@Override
+	public int endOffset() throws IOException {
+		return 0;
+	}
+
+	@Override
+	public BytesRef getPayload() throws IOException {
+		return null;
+	}
+
+	private void downHeap() {
+		if (heapSize == 0) {
+			return;
+		}
+		int i = 0;
+		int node = heap[0];
+		int nodeDoc = iterators[node].docID();
+		int child = 1;
+		while (child < heapSize) {
+			if (child + 1 < heapSize && iterators[heap[child + 1]].docID() < iterators[heap[child]].docID()) {
+				child++;
+			}
+			if (iterators[heap[child]].docID() >= nodeDoc) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+			child = 2 * i + 1;
+		}
+		heap[i] = node;
+	}
+
+}
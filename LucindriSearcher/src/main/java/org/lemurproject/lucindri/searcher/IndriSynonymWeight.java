@@ -12,10 +12,14 @@
 package org.lemurproject.lucindri.searcher;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
-import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.TermStatistics;
+import org.apache.lucene.search.Weight;
 
 public class IndriSynonymWeight extends IndriTermOpWeight {
 
@@ -24,22 +28,61 @@ public class IndriSynonymWeight extends IndriTermOpWeight {
 		super(query, searcher, field, boost);
 	}
 
-	protected IndriInvertedList createInvertedList(List<IndriDocAndPostingsIterator> iterators) throws IOException {
-		IndriInvertedList invList = new IndriInvertedList(getField());
-
-		for (IndriDocAndPostingsIterator iterator : iterators) {
-			int docId = iterator.nextDoc();
-			while (iterator.docID() != DocIdSetIterator.NO_MORE_DOCS) {
-				for (int i = 0; i < iterator.freq(); i++) {
-					int startPostion = iterator.nextPosition();
-					int endPostion = iterator.endPosition();
-					invList.addPosting(docId, startPostion, endPostion);
-				}
-				docId = iterator.nextDoc();
+	@Override
+	protected boolean matchesEveryClause() {
+		return false;
+	}
+
+	/**
+	 * Returns a lazy iterator over the union of the synonyms that only merges the
+	 * extents of the documents it is advanced to. Extents of the synonyms that
+	 * are the same or contained in another one, such as those of #syn(a a), are
+	 * only in it once.
+	 */
+	@Override
+	protected IndriDocAndPostingsIterator getProximityIterator(List<IndriDocAndPostingsIterator> iterators)
+			throws IOException {
+		return new IndriSynonymEnum(iterators, getField());
+	}
+
+	/**
+	 * The union of distinct terms of one field has the extents of all of them,
+	 * so its collection frequency is the sum of theirs, and the synonyms are not
+	 * drained to count it. The document frequency is only bounded, by the
+	 * largest of theirs, which is enough for the score bound it is used for:
+	 * Indri models score with the collection frequency alone. A repeated term or
+	 * a nested operator can share extents with another synonym, which the union
+	 * has only once, so the union is counted then.
+	 */
+	@Override
+	protected TermStatistics countTermStatistics() throws IOException {
+		Set<Term> terms = new HashSet<>();
+		String termField = null;
+		long df = 0;
+		long ctf = 0;
+		for (Weight w : getWeights()) {
+			if (!(w instanceof IndriTermQuery.IndriTermWeight)) {
+				return super.countTermStatistics();
+			}
+			Term term = ((IndriTermQuery) w.getQuery()).getTerm();
+			if (termField == null) {
+				termField = term.field();
+			}
+			if (!terms.add(term) || !term.field().equals(termField)) {
+				return super.countTermStatistics();
+			}
+			TermStatistics synonymStats = ((IndriTermQuery.IndriTermWeight) w).getTermStatistics();
+			if (synonymStats != null) {
+				df = Math.max(df, synonymStats.docFreq());
+				ctf += synonymStats.totalTermFreq();
 			}
 		}
-		return invList;
+		return createTermStatistics(df, ctf);
+	}
 
+	@Override
+	protected IndriInvertedList createInvertedList(List<IndriDocAndPostingsIterator> iterators) throws IOException {
+		return new IndriSynonymEnum(iterators, getField()).toInvertedList(getField());
 	}
 
 }
@@ -12,66 +12,73 @@
 package org.lemurproject.lucindri.searcher;
 
 import java.io.IOException;
-import java.util.TreeMap;
 
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.util.BytesRef;
 
+/**
+ * Iterates over an {@link IndriInvertedList} with a cursor over its documents
+ * and a cursor over the extents of the current document.
+ */
 public class IndriTermOpEnum extends IndriDocAndPostingsIterator {
 
-	private IndriInvertedList invList;
-	private Integer currentDocID;
-	private int positionIndex;
+	private final IndriInvertedList invList;
+	private int docIndex;
+	private int currentDocID;
+	private int postingIndex;
+	private int postingsEnd;
 	private int endPostion;
 
 	public IndriTermOpEnum(IndriInvertedList invList) {
 		this.invList = invList;
-//		if (invList.getDocPostings() != null && invList.getDocPostings().size() > 0) {
-//			currentDocID = invList.getDocPostings().firstKey();
-//			positionIndex = 0;
-//		} else {
+		docIndex = -1;
 		currentDocID = -1;
-		positionIndex = 0;
+		postingIndex = 0;
+		postingsEnd = 0;
 		endPostion = -1;
-//		}
 	}
 
 	@Override
 	public int docID() {
-		return currentDocID.intValue();
+		return currentDocID;
 	}
 
 	@Override
 	public int nextDoc() throws IOException {
-		currentDocID = invList.getDocPostings().higherKey(currentDocID);
-		if (currentDocID == null) {
-			currentDocID = DocIdSetIterator.NO_MORE_DOCS;
-		}
-		return currentDocID;
+		return moveTo(docIndex + 1);
 	}
 
 	@Override
 	public int advance(int target) throws IOException {
-		currentDocID = invList.getDocPostings().higherKey(target - 1);
-		if (currentDocID == null) {
+		return moveTo(invList.findDoc(target, docIndex + 1));
+	}
+
+	private int moveTo(int index) {
+		docIndex = index;
+		if (docIndex >= invList.getDf()) {
+			docIndex = invList.getDf();
 			currentDocID = DocIdSetIterator.NO_MORE_DOCS;
+			postingIndex = 0;
+			postingsEnd = 0;
+		} else {
+			currentDocID = invList.getDocId(docIndex);
+			postingIndex = invList.getPostingsOffset(docIndex);
+			postingsEnd = invList.getPostingsOffset(docIndex + 1);
 		}
+		endPostion = -1;
 		return currentDocID;
 	}
 
 	@Override
 	public long cost() {
-		// TODO Auto-generated method stub
-		return 0;
+		return invList.getDf();
 	}
 
 	public int freq() throws IOException {
-		TreeMap<Integer, IndriDocumentPosting> docPostings = invList.getDocPostings().get(currentDocID);
-		int freq = 0;
-		if (docPostings != null) {
-			freq = docPostings.size();
+		if (docIndex < 0 || currentDocID == DocIdSetIterator.NO_MORE_DOCS) {
+			return 0;
 		}
-		return freq;
+		return postingsEnd - invList.getPostingsOffset(docIndex);
 	}
 
 	/**
@@ -81,12 +88,10 @@ public class IndriTermOpEnum extends IndriDocAndPostingsIterator {
 	@Override
 	public int nextPosition() throws IOException {
 		int nextPosition = -1;
-		if (invList.getDocPostings() != null && invList.getDocPostings().size() > 0
-				&& invList.getDocPostings().get(currentDocID) != null
-				&& invList.getDocPostings().get(currentDocID).get(positionIndex) != null) {
-			nextPosition = invList.getDocPostings().get(currentDocID).get(positionIndex).getStart();
-			endPostion = invList.getDocPostings().get(currentDocID).get(positionIndex).getEnd();
-			positionIndex++;
+		if (postingIndex < postingsEnd) {
+			nextPosition = invList.getStart(postingIndex);
+			endPostion = invList.getEnd(postingIndex);
+			postingIndex++;
 		}
 		return nextPosition;
 	}
@@ -98,19 +103,16 @@ public class IndriTermOpEnum extends IndriDocAndPostingsIterator {
 
 	@Override
 	public int startOffset() throws IOException {
-		// TODO Auto-generated method stub
 		return 0;
 	}
 
 	@Override
 	public int endOffset() throws IOException {
-		// TODO Auto-generated method stub
 		return 0;
 	}
 
 	@Override
 	public BytesRef getPayload() throws IOException {
-		// TODO Auto-generated method stub
 		return null;
 	}
 
@@ -15,20 +15,23 @@ import java.io.IOException;
 
 import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.IndriScorer;
-import org.apache.lucene.search.LeafSimScorer;
+import org.apache.lucene.search.TwoPhaseIterator;
 import org.apache.lucene.search.Weight;
 
-public class IndriTermOpScorer extends IndriScorer {
+public class IndriTermOpScorer extends IndriScorer implements IndriScoreBounds {
 
-	private final IndriTermOpEnum postingsEnum;
-	private final LeafSimScorer docScorer;
+	private final IndriDocAndPostingsIterator postingsEnum;
+	private final IndriLeafSimScorer docScorer;
 	private final float boost;
+	private final long maxFreq;
 
-	protected IndriTermOpScorer(Weight weight, IndriTermOpEnum postingsEnum, LeafSimScorer docScorer, float boost) {
+	protected IndriTermOpScorer(Weight weight, IndriDocAndPostingsIterator postingsEnum, IndriLeafSimScorer docScorer,
+			float boost, long maxFreq) {
 		super(weight, boost);
 		this.docScorer = docScorer;
 		this.postingsEnum = postingsEnum;
 		this.boost = boost;
+		this.maxFreq = maxFreq;
 	}
 
 	@Override
@@ -45,6 +48,19 @@ public class IndriTermOpScorer extends IndriScorer {
 		return postingsEnum;
 	}
 
+	/**
+	 * Lazily evaluated windows match in two phases: the documents that contain
+	 * every clause, then those where the clauses form a window. Conjunctions
+	 * check the documents of their other clauses before the positions.
+	 */
+	@Override
+	public TwoPhaseIterator twoPhaseIterator() {
+		if (postingsEnum instanceof IndriWindowEnum) {
+			return ((IndriWindowEnum) postingsEnum).asTwoPhaseIterator();
+		}
+		return null;
+	}
+
 	@Override
 	public float score() throws IOException {
 		assert docID() != DocIdSetIterator.NO_MORE_DOCS;
@@ -62,9 +78,19 @@ public class IndriTermOpScorer extends IndriScorer {
 		return boost;
 	}
 
+	/**
+	 * Returns the score of the largest frequency the extents can have in the leaf
+	 * in a document of length zero. Indri models score higher frequencies higher
+	 * and longer documents lower.
+	 */
 	@Override
 	public float getMaxScore(int upTo) throws IOException {
-		return 0;
+		return docScorer.getSimScorer().score(maxFreq, 0L);
+	}
+
+	@Override
+	public float getMaxSmoothingScore() throws IOException {
+		return docScorer.getSimScorer().score(0, 0L);
 	}
 
 	@Override
@@ -17,11 +17,11 @@ import java.util.List;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BulkScorer;
 import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.LeafSimScorer;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.TermStatistics;
@@ -35,8 +35,17 @@ public abstract class IndriTermOpWeight extends IndriWeight {
 	private final String field;
 	private final float boost;
 	private final Similarity similarity;
-	private CollectionStatistics collectionStats;
+	private final CollectionStatistics collectionStats;
+	private final IndriProximityListCache proximityListCache;
+	private final List<LeafReaderContext> leaves;
+	// Statistics of the extents in the whole index, and the sim scorer built
+	// from them, set when a scorer is first asked for
+	private boolean termStatsCounted;
+	private TermStatistics termStats;
 	private Similarity.SimScorer simScorer;
+	// Extents found while counting, by leaf ord, so that they are not evaluated
+	// again to score; null if they were not counted or come from the cache
+	private volatile IndriInvertedList[] countedLists;
 
 	protected IndriTermOpWeight(IndriProximityQuery query, IndexSearcher searcher, String field, float boost)
 			throws IOException {
@@ -45,6 +54,10 @@ public abstract class IndriTermOpWeight extends IndriWeight {
 		this.boost = boost;
 		this.similarity = searcher.getSimilarity();
 		collectionStats = searcher.collectionStatistics(field);
+		proximityListCache = searcher instanceof IndriIndexSearcher
+				? ((IndriIndexSearcher) searcher).getProximityListCache()
+				: null;
+		leaves = searcher.getTopReaderContext().leaves();
 		weights = new ArrayList<>();
 		for (BooleanClause c : query) {
 			Weight w = searcher.createWeight(c.getQuery(), scoreMode, 1.0f);
@@ -53,13 +66,130 @@ public abstract class IndriTermOpWeight extends IndriWeight {
 	}
 
 	protected Scorer getScorer(LeafReaderContext context) throws IOException {
+		TermStatistics termStats = getTermStatistics();
+		if (termStats == null) {
+			return null;
+		}
+		IndriDocAndPostingsIterator postingsEnum = getProximityIterator(context);
+		if (postingsEnum == null) {
+			return null;
+		}
+
+		IndriLeafSimScorer leafScorer = new IndriLeafSimScorer(simScorer, similarity, context.reader(), field, true);
+		long maxFreq = termStats.totalTermFreq() - termStats.docFreq() + 1;
+		return new IndriTermOpScorer(this, postingsEnum, leafScorer, boost, maxFreq);
+	}
+
+	/**
+	 * Returns the statistics of the extents of this operator in the whole index,
+	 * or null if it has none. They are computed once per query, the first time a
+	 * scorer is asked for, and shared by all leaves, so that scores do not depend
+	 * on how the index is divided into segments or shards.
+	 */
+	protected synchronized TermStatistics getTermStatistics() throws IOException {
+		if (!termStatsCounted) {
+			termStats = countTermStatistics();
+			if (termStats != null) {
+				simScorer = similarity.scorer(boost, collectionStats, termStats);
+			}
+			termStatsCounted = true;
+		}
+		return termStats;
+	}
+
+	/**
+	 * Counts the documents and extents of this operator in every leaf. Extents in
+	 * the proximity list cache are counted from the cached lists. Otherwise the
+	 * operator is evaluated over every document it matches, as the collection
+	 * frequency of a window is only known once all of its extents are found, and
+	 * the extents are kept for the scorers of the query, which then iterate over
+	 * them instead of evaluating the operator again.
+	 */
+	protected TermStatistics countTermStatistics() throws IOException {
+		long df = 0;
+		long ctf = 0;
+		IndriInvertedList[] lists = proximityListCache == null ? new IndriInvertedList[leaves.size()] : null;
+		for (LeafReaderContext leaf : leaves) {
+			IndriDocAndPostingsIterator counter = getProximityIterator(leaf);
+			IndriInvertedList invList = null;
+			if (counter instanceof IndriTermOpEnum) {
+				invList = ((IndriTermOpEnum) counter).getInvList();
+			} else if (counter != null) {
+				invList = counter.toInvertedList(field);
+			}
+			if (invList != null) {
+				df += invList.getDf();
+				ctf += invList.getCtf();
+				if (lists != null) {
+					lists[leaf.ord] = invList;
+				}
+			}
+		}
+		countedLists = lists;
+		return createTermStatistics(df, ctf);
+	}
+
+	protected TermStatistics createTermStatistics(long df, long ctf) {
+		TermStatistics termStats = null;
+		if (df > 0) {
+			termStats = new TermStatistics(new Term(field, "NEAR").bytes(), df, ctf);
+		}
+		return termStats;
+	}
+
+	/**
+	 * Returns an unpositioned iterator over the extents of this operator in the
+	 * leaf, or null if none of its clauses occur there. Once the statistics of
+	 * the operator are counted, it iterates over the extents found then. With a
+	 * proximity list cache, the extents are materialized once per leaf and shared
+	 * by the queries that repeat this operator.
+	 */
+	protected IndriDocAndPostingsIterator getProximityIterator(LeafReaderContext context) throws IOException {
+		IndriInvertedList[] lists = countedLists;
+		if (lists != null) {
+			return lists[context.ord] == null ? null : new IndriTermOpEnum(lists[context.ord]);
+		}
+		if (proximityListCache == null) {
+			return createProximityIterator(context);
+		}
+		IndriInvertedList invList = proximityListCache.get(getQuery(), context);
+		if (invList == null) {
+			IndriDocAndPostingsIterator iterator = createProximityIterator(context);
+			if (iterator == null) {
+				return null;
+			}
+			if (iterator instanceof IndriTermOpEnum) {
+				invList = ((IndriTermOpEnum) iterator).getInvList();
+			} else {
+				invList = iterator.toInvertedList(field);
+			}
+			proximityListCache.put(getQuery(), context, invList);
+		}
+		return new IndriTermOpEnum(invList);
+	}
+
+	private IndriDocAndPostingsIterator createProximityIterator(LeafReaderContext context) throws IOException {
 		List<IndriDocAndPostingsIterator> iterators = new ArrayList<>();
 		for (Weight w : weights) {
+			if (w instanceof IndriTermOpWeight) {
+				// Take the extents of nested operators directly, so lazy ones are not
+				// evaluated up front to build a scorer that is never used
+				IndriDocAndPostingsIterator iterator = ((IndriTermOpWeight) w).getProximityIterator(context);
+				if (iterator != null) {
+					iterators.add(iterator);
+				} else if (matchesEveryClause()) {
+					return null;
+				}
+				continue;
+			}
 			Scorer scorer = w.scorer(context);
+			if (scorer == null && matchesEveryClause()) {
+				return null;
+			}
 			if (scorer != null) {
 				IndriDocAndPostingsIterator iterator = null;
-				if (scorer.iterator() instanceof IndriTermOpEnum) {
-					iterator = ((IndriTermOpEnum) scorer.iterator());
+				if (scorer.iterator() instanceof IndriDocAndPostingsIterator) {
+					iterator = ((IndriDocAndPostingsIterator) scorer.iterator());
 				} else if (scorer.iterator() instanceof PostingsEnum) {
 					iterator = new IndriPostingsEnumWrapper((PostingsEnum) scorer.iterator());
 				}
@@ -70,19 +200,20 @@ public abstract class IndriTermOpWeight extends IndriWeight {
 		if (iterators.isEmpty()) {
 			return null;
 		}
+		return getProximityIterator(iterators);
+	}
 
-		IndriTermOpEnum postingsEnum = getProximityIterator(iterators);
-		TermStatistics termStats = postingsEnum.getInvList().getTermStatistics();
-		Scorer scorer = null;
-		if (termStats != null) {
-			this.simScorer = similarity.scorer(boost, collectionStats, termStats);
-			LeafSimScorer leafScorer = new LeafSimScorer(simScorer, context.reader(), field, true);
-			scorer = new IndriTermOpScorer(this, postingsEnum, leafScorer, boost);
-		}
-		return scorer;
+	/**
+	 * Returns whether the operator only matches where all of its clauses do, so
+	 * that it has no extents in a leaf where one of them does not occur. Windows
+	 * and #band do, #syn matches where any of its synonyms does.
+	 */
+	protected boolean matchesEveryClause() {
+		return true;
 	}
 
-	protected IndriTermOpEnum getProximityIterator(List<IndriDocAndPostingsIterator> iterators) throws IOException {
+	protected IndriDocAndPostingsIterator getProximityIterator(List<IndriDocAndPostingsIterator> iterators)
+			throws IOException {
 		IndriInvertedList invList = createInvertedList(iterators);
 		IndriTermOpEnum nearPostings = new IndriTermOpEnum(invList);
 
@@ -96,6 +227,10 @@ public abstract class IndriTermOpWeight extends IndriWeight {
 		return field;
 	}
 
+	protected List<Weight> getWeights() {
+		return weights;
+	}
+
 	@Override
 	public Scorer scorer(LeafReaderContext context) throws IOException {
 		return getScorer(context);
@@ -12,9 +12,13 @@
 package org.lemurproject.lucindri.searcher;
 
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.Objects;
 import java.util.Set;
 
+import org.apache.lucene.index.Impact;
+import org.apache.lucene.index.Impacts;
+import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.IndexReaderContext;
 import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
@@ -25,9 +29,9 @@ import org.apache.lucene.index.TermState;
 import org.apache.lucene.index.TermStates;
 import org.apache.lucene.index.TermsEnum;
 import org.apache.lucene.search.CollectionStatistics;
+import org.apache.lucene.search.DocIdSetIterator;
 import org.apache.lucene.search.Explanation;
 import org.apache.lucene.search.IndexSearcher;
-import org.apache.lucene.search.LeafSimScorer;
 import org.apache.lucene.search.Matches;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreMode;
@@ -39,14 +43,21 @@ import org.apache.lucene.search.similarities.Similarity;
 public class IndriTermQuery extends Query {
 
 	private final Term term;
+	// Field whose lengths and collection statistics score the term
+	private final String scoringField;
 	private final TermStates perReaderTermState;
 
 	final class IndriTermWeight extends Weight {
 		private final Similarity similarity;
 		private final float boost;
 		private final Similarity.SimScorer simScorer;
+		private final TermStatistics termStats;
 		private final TermStates termStates;
 		private final ScoreMode scoreMode;
+		// Highest score of the term by leaf ord, NaN until a scorer of the leaf is
+		// created. Proximity operators and explanations may create several scorers
+		// of a leaf, and each would otherwise walk the impacts or scan the norms again
+		private final float[] leafMaxScores;
 
 		public IndriTermWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost, TermStates termStates)
 				throws IOException {
@@ -55,10 +66,11 @@ public class IndriTermQuery extends Query {
 			this.similarity = searcher.getSimilarity();
 			this.scoreMode = ScoreMode.TOP_SCORES;
 			this.termStates = termStates;
+			leafMaxScores = new float[searcher.getTopReaderContext().leaves().size()];
+			Arrays.fill(leafMaxScores, Float.NaN);
 
 			final CollectionStatistics collectionStats;
-			final TermStatistics termStats;
-			collectionStats = searcher.collectionStatistics(IndriTermQuery.this.getTerm().field());
+			collectionStats = searcher.collectionStatistics(scoringField);
 			termStats = searcher.termStatistics(IndriTermQuery.this.getTerm(), termStates);
 
 			if (termStats == null) {
@@ -68,6 +80,14 @@ public class IndriTermQuery extends Query {
 			}
 		}
 
+		/**
+		 * Returns the statistics of the term in the whole index, or null if it does
+		 * not occur.
+		 */
+		TermStatistics getTermStatistics() {
+			return termStats;
+		}
+
 		@Override
 		public void extractTerms(Set<Term> terms) {
 			terms.add(getTerm());
@@ -93,14 +113,62 @@ public class IndriTermQuery extends Query {
 			if (termsEnum == null || simScorer == null) {
 				return null;
 			}
-			LeafSimScorer scorer = new LeafSimScorer(simScorer, context.reader(), term.field(),
+			IndriLeafSimScorer scorer = new IndriLeafSimScorer(simScorer, similarity, context.reader(), scoringField,
 					scoreMode.needsScores());
 
+			float maxScore = leafMaxScores[context.ord];
+			if (Float.isNaN(maxScore)) {
+				// Scorers of different leaves write different slots, and scorers of the
+				// same leaf compute the same score
+				maxScore = getMaxScore(context, termsEnum);
+				leafMaxScores[context.ord] = maxScore;
+			}
 			Scorer indriTermScorer = new IndriTermScorer(this, termsEnum.impacts(PostingsEnum.POSITIONS), scorer,
-					this.boost);
+					this.boost, maxScore);
 			return indriTermScorer;
 		}
 
+		/**
+		 * Returns the highest score of the term in any document of the leaf. Long
+		 * postings lists take the maximum over the competitive (freq, norm) pairs
+		 * that the codec stores with their skip data. Short ones have no skip data
+		 * and are scanned instead, as are terms scored with the lengths of another
+		 * field, whose impacts do not hold the lengths they are scored with.
+		 */
+		private float getMaxScore(LeafReaderContext context, TermsEnum termsEnum) throws IOException {
+			ImpactsEnum impactsEnum = termsEnum.impacts(PostingsEnum.FREQS);
+			if (!scoringField.equals(term.field())) {
+				return scanMaxScore(context, impactsEnum);
+			}
+			float maxScore = Float.NEGATIVE_INFINITY;
+			int target = 0;
+			while (target != DocIdSetIterator.NO_MORE_DOCS) {
+				impactsEnum.advanceShallow(target);
+				Impacts impacts = impactsEnum.getImpacts();
+				int level = impacts.numLevels() - 1;
+				for (Impact impact : impacts.getImpacts(level)) {
+					if (impact.freq == Integer.MAX_VALUE) {
+						// No impacts were recorded for this term
+						return scanMaxScore(context, impactsEnum);
+					}
+					maxScore = Math.max(maxScore, simScorer.score(impact.freq, impact.norm));
+				}
+				int upTo = impacts.getDocIdUpTo(level);
+				target = upTo == DocIdSetIterator.NO_MORE_DOCS ? upTo : upTo + 1;
+			}
+			return maxScore;
+		}
+
+		private float scanMaxScore(LeafReaderContext context, PostingsEnum postings) throws IOException {
+			IndriLeafSimScorer docScorer = new IndriLeafSimScorer(simScorer, similarity, context.reader(), scoringField,
+					true);
+			float maxScore = Float.NEGATIVE_INFINITY;
+			while (postings.nextDoc() != DocIdSetIterator.NO_MORE_DOCS) {
+				maxScore = Math.max(maxScore, docScorer.score(postings.docID(), postings.freq()));
+			}
+			return maxScore;
+		}
+
 		/**
 		 * Returns a {@link TermsEnum} positioned at this weights Term or null if the
 		 * term does not exist in the given context
@@ -137,7 +205,8 @@ public class IndriTermQuery extends Query {
 				int newDoc = scorer.iterator().advance(doc);
 				if (newDoc == doc) {
 					float freq = scorer.freq();
-					LeafSimScorer docScorer = new LeafSimScorer(simScorer, context.reader(), term.field(), true);
+					IndriLeafSimScorer docScorer = new IndriLeafSimScorer(simScorer, similarity, context.reader(),
+							scoringField, true);
 					Explanation freqExplanation = Explanation.match(freq, "freq, occurrences of term within document");
 					Explanation scoreExplanation = docScorer.explain(doc, freqExplanation);
 					return Explanation.match(scoreExplanation.getValue(), "weight(" + getQuery() + " in " + doc + ") ["
@@ -150,7 +219,18 @@ public class IndriTermQuery extends Query {
 
 	/** Constructs a query for the term <code>t</code>. */
 	public IndriTermQuery(Term t) {
+		this(t, t.field());
+	}
+
+	/**
+	 * Constructs a query for the term <code>t</code> that is scored as if it
+	 * occurred in <code>scoringField</code>, with the lengths and collection
+	 * statistics of that field. Used for the bigram fields, whose terms stand for
+	 * ordered windows of their field.
+	 */
+	public IndriTermQuery(Term t, String scoringField) {
 		this.term = t;
+		this.scoringField = scoringField;
 		this.perReaderTermState = null;
 	}
 
@@ -160,6 +240,7 @@ public class IndriTermQuery extends Query {
 	 */
 	public IndriTermQuery(Term t, TermStates states) {
 		this.term = t;
+		this.scoringField = t.field();
 		this.perReaderTermState = Objects.requireNonNull(states);
 	}
 
@@ -168,7 +249,11 @@ public class IndriTermQuery extends Query {
 		final IndexReaderContext context = searcher.getTopReaderContext();
 		final TermStates termState;
 		if (perReaderTermState == null || perReaderTermState.wasBuiltFor(context) == false) {
-			termState = TermStates.build(context, term, scoreMode.needsScores());
+			if (searcher instanceof IndriIndexSearcher) {
+				termState = ((IndriIndexSearcher) searcher).getTermStates(term, scoreMode.needsScores());
+			} else {
+				termState = TermStates.build(context, term, scoreMode.needsScores());
+			}
 		} else {
 			// PRTS was pre-build for this IS
 			termState = this.perReaderTermState;
@@ -182,6 +267,11 @@ public class IndriTermQuery extends Query {
 		return term;
 	}
 
+	/** Returns the field whose lengths and statistics score the term. */
+	public String getScoringField() {
+		return scoringField;
+	}
+
 	/**
 	 * Returns the {@link TermStates} passed to the constructor, or null if it was
 	 * not passed.
@@ -205,12 +295,13 @@ public class IndriTermQuery extends Query {
 
 	@Override
 	public boolean equals(Object other) {
-		return sameClassAs(other) && term.equals(((IndriTermQuery) other).term);
+		return sameClassAs(other) && term.equals(((IndriTermQuery) other).term)
+				&& scoringField.equals(((IndriTermQuery) other).scoringField);
 	}
 
 	@Override
 	public int hashCode() {
-		return classHash() ^ term.hashCode();
+		return classHash() ^ term.hashCode() ^ 31 * scoringField.hashCode();
 	}
 
 }
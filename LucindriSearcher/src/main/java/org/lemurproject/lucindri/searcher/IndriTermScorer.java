@@ -12,32 +12,139 @@
 package org.lemurproject.lucindri.searcher;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
+import org.apache.lucene.index.FilterLeafReader.FilterPostingsEnum;
+import org.apache.lucene.index.Impact;
+import org.apache.lucene.index.Impacts;
 import org.apache.lucene.index.ImpactsEnum;
 import org.apache.lucene.index.PostingsEnum;
-import org.apache.lucene.index.SlowImpactsEnum;
 import org.apache.lucene.search.DocIdSetIterator;
-import org.apache.lucene.search.ImpactsDISI;
 import org.apache.lucene.search.IndriScorer;
-import org.apache.lucene.search.LeafSimScorer;
 import org.apache.lucene.search.Weight;
 
-public class IndriTermScorer extends IndriScorer {
+/**
+ * Scorer for a single term. The score bounds of blocks of documents come from
+ * the impacts the codec stores with the skip data of the postings, and once a
+ * minimum competitive score is set, the iterator skips the blocks that cannot
+ * reach it.
+ */
+public class IndriTermScorer extends IndriScorer implements IndriScoreBounds {
 
-	private final PostingsEnum postingsEnum;
 	private final ImpactsEnum impactsEnum;
-	private final DocIdSetIterator iterator;
-	private final LeafSimScorer docScorer;
-	private final ImpactsDISI impactsDisi;
+	private final PostingsEnum iterator;
+	private final IndriLeafSimScorer docScorer;
 	private final float boost;
+	private final float maxScore;
+	// Max score of each impacts level, valid while the level ends at the same doc
+	private int[] levelUpTos;
+	private float[] levelMaxScores;
+	private float minCompetitiveScore;
+	// Last doc of the blocks already known to be competitive
+	private int competitiveUpTo;
 
-	public IndriTermScorer(Weight weight, PostingsEnum postingsEnum, LeafSimScorer docScorer, float boost) {
+	/**
+	 * Creates a scorer for a term whose score in any document of the leaf is at
+	 * most {@code maxScore}.
+	 */
+	public IndriTermScorer(Weight weight, ImpactsEnum impactsEnum, IndriLeafSimScorer docScorer, float boost,
+			float maxScore) {
 		super(weight, boost);
 		this.docScorer = docScorer;
 		this.boost = boost;
-		iterator = this.postingsEnum = postingsEnum;
-		impactsEnum = new SlowImpactsEnum(postingsEnum);
-		impactsDisi = new ImpactsDISI(impactsEnum, impactsEnum, docScorer.getSimScorer());
+		this.maxScore = maxScore;
+		this.impactsEnum = impactsEnum;
+		levelUpTos = new int[0];
+		levelMaxScores = new float[0];
+		minCompetitiveScore = Float.NEGATIVE_INFINITY;
+		competitiveUpTo = -1;
+		// Still a PostingsEnum, so that proximity operators can read the positions
+		iterator = new FilterPostingsEnum(impactsEnum) {
+			@Override
+			public int nextDoc() throws IOException {
+				if (minCompetitiveScore == Float.NEGATIVE_INFINITY) {
+					return in.nextDoc();
+				}
+				return advance(in.docID() + 1);
+			}
+
+			@Override
+			public int advance(int target) throws IOException {
+				return in.advance(competitiveTarget(target));
+			}
+		};
+	}
+
+	/**
+	 * Returns the first doc at or after {@code target} that is in a block whose
+	 * score bound is competitive.
+	 */
+	private int competitiveTarget(int target) throws IOException {
+		while (target > competitiveUpTo && target != DocIdSetIterator.NO_MORE_DOCS) {
+			int upTo = advanceShallow(target);
+			if (getMaxScore(upTo) >= minCompetitiveScore) {
+				competitiveUpTo = upTo;
+			} else {
+				target = upTo == DocIdSetIterator.NO_MORE_DOCS ? upTo : upTo + 1;
+			}
+		}
+		return target;
+	}
+
+	@Override
+	public void setMinCompetitiveScore(float minScore) throws IOException {
+		if (minScore > minCompetitiveScore) {
+			minCompetitiveScore = minScore;
+			competitiveUpTo = -1;
+		}
+	}
+
+	@Override
+	public int advanceShallow(int target) throws IOException {
+		impactsEnum.advanceShallow(Math.max(target, impactsEnum.docID()));
+		return impactsEnum.getImpacts().getDocIdUpTo(0);
+	}
+
+	/**
+	 * Returns the max score of the smallest impacts level that reaches
+	 * {@code upTo}, or of the whole leaf if there is none.
+	 */
+	@Override
+	public float getMaxScore(int upTo) throws IOException {
+		if (upTo == DocIdSetIterator.NO_MORE_DOCS) {
+			return maxScore;
+		}
+		Impacts impacts = impactsEnum.getImpacts();
+		int numLevels = impacts.numLevels();
+		if (levelUpTos.length < numLevels) {
+			levelUpTos = new int[numLevels];
+			Arrays.fill(levelUpTos, -1);
+			levelMaxScores = new float[numLevels];
+		}
+		for (int level = 0; level < numLevels; level++) {
+			int levelUpTo = impacts.getDocIdUpTo(level);
+			if (levelUpTo >= upTo) {
+				if (levelUpTos[level] != levelUpTo) {
+					levelUpTos[level] = levelUpTo;
+					levelMaxScores[level] = Math.min(maxScore, getMaxScore(impacts.getImpacts(level)));
+				}
+				return levelMaxScores[level];
+			}
+		}
+		return maxScore;
+	}
+
+	private float getMaxScore(List<Impact> impacts) {
+		float levelMaxScore = Float.NEGATIVE_INFINITY;
+		for (Impact impact : impacts) {
+			if (impact.freq == Integer.MAX_VALUE) {
+				// Short postings have no impacts
+				return maxScore;
+			}
+			levelMaxScore = Math.max(levelMaxScore, docScorer.getSimScorer().score(impact.freq, impact.norm));
+		}
+		return levelMaxScore;
 	}
 
 	@Override
@@ -47,13 +154,13 @@ public class IndriTermScorer extends IndriScorer {
 
 	@Override
 	public int docID() {
-		return postingsEnum.docID();
+		return iterator.docID();
 	}
 
 	@Override
 	public float score() throws IOException {
 		assert docID() != DocIdSetIterator.NO_MORE_DOCS;
-		return docScorer.score(postingsEnum.docID(), postingsEnum.freq());
+		return docScorer.score(iterator.docID(), iterator.freq());
 	}
 
 	@Override
@@ -66,13 +173,17 @@ public class IndriTermScorer extends IndriScorer {
 		return this.boost;
 	}
 
+	/**
+	 * Returns the smoothing score of a document of length zero. Indri models score
+	 * longer documents lower.
+	 */
 	@Override
-	public float getMaxScore(int upTo) throws IOException {
-		return 0;
+	public float getMaxSmoothingScore() throws IOException {
+		return docScorer.getSimScorer().score(0, 0L);
 	}
 
 	public final int freq() throws IOException {
-		return postingsEnum.freq();
+		return iterator.freq();
 	}
 
 }
@@ -0,0 +1,90 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.TermStates;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Least recently used cache of the {@link TermStates} of the terms of a
+ * reader, shared by all queries run on a searcher. Building the TermStates of
+ * a term seeks the term dictionary of every leaf, which queries that share
+ * terms would otherwise repeat.
+ */
+public class IndriTermStatesCache {
+
+	private final IndexReaderContext context;
+	private final Map<Term, TermStates> cache;
+	private long hitCount;
+	private long missCount;
+
+	/**
+	 * Creates a cache of at most {@code maxSize} terms of the given top level
+	 * reader context.
+	 */
+	public IndriTermStatesCache(IndexReaderContext context, int maxSize) {
+		this.context = context;
+		cache = new LinkedHashMap<Term, TermStates>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Term, TermStates> eldest) {
+				return size() > maxSize;
+			}
+		};
+	}
+
+	/**
+	 * Returns the TermStates of the term, with its statistics, building them on
+	 * a miss. The returned TermStates are shared and must not be modified.
+	 */
+	public TermStates get(Term term) throws IOException {
+		synchronized (this) {
+			TermStates termStates = cache.get(term);
+			if (termStates != null) {
+				hitCount++;
+				return termStates;
+			}
+			missCount++;
+		}
+		// Built without holding the lock, so that a miss does not block the
+		// queries that hit
+		TermStates termStates = TermStates.build(context, term, true);
+		synchronized (this) {
+			cache.put(new Term(term.field(), BytesRef.deepCopyOf(term.bytes())), termStates);
+		}
+		return termStates;
+	}
+
+	public synchronized long getHitCount() {
+		return hitCount;
+	}
+
+	public synchronized long getMissCount() {
+		return missCount;
+	}
+
+	public synchronized int size() {
+		return cache.size();
+	}
+
+	public synchronized void clear() {
+		cache.clear();
+	}
+
+}
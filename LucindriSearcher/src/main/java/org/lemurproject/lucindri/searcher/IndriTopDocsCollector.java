@@ -0,0 +1,154 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.Collection;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.PriorityQueue;
+
+/**
+ * Collects the top hits by score, like Lucene's TopScoreDocCollector, for
+ * scores that may be negative. Indri scores are log probabilities, which the
+ * Lucene collector never reports to the scorer as competitive. This collector
+ * reports the score of its worst hit as soon as it has a full page, so that
+ * scorers can skip documents that cannot be competitive.
+ */
+public class IndriTopDocsCollector extends TopDocsCollector<ScoreDoc> {
+
+	private final int numHits;
+	// The worst hit, once the queue is full
+	private ScoreDoc pqTop;
+	private float minCompetitiveScore;
+
+	public IndriTopDocsCollector(int numHits) {
+		super(new HitQueue(numHits));
+		// Unlike Lucene's collectors, the queue has no sentinels: a real hit may
+		// score -Infinity, the score of a sentinel, and must still be kept
+		this.numHits = numHits;
+		minCompetitiveScore = Float.NEGATIVE_INFINITY;
+	}
+
+	/**
+	 * Returns a manager that collects the top {@code numHits} of each leaf slice
+	 * and merges them like {@link org.apache.lucene.search.IndexSearcher}.
+	 */
+	public static CollectorManager<IndriTopDocsCollector, TopDocs> createManager(int numHits) {
+		return new CollectorManager<IndriTopDocsCollector, TopDocs>() {
+			@Override
+			public IndriTopDocsCollector newCollector() throws IOException {
+				return new IndriTopDocsCollector(numHits);
+			}
+
+			@Override
+			public TopDocs reduce(Collection<IndriTopDocsCollector> collectors) throws IOException {
+				TopDocs[] topDocs = new TopDocs[collectors.size()];
+				int i = 0;
+				for (IndriTopDocsCollector collector : collectors) {
+					topDocs[i++] = collector.topDocs();
+				}
+				return TopDocs.merge(0, numHits, topDocs, true);
+			}
+		};
+	}
+
+	@Override
+	public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+		final int docBase = context.docBase;
+		return new LeafCollector() {
+			private Scorable scorer;
+
+			@Override
+			public void setScorer(Scorable scorer) throws IOException {
+				this.scorer = scorer;
+				if (minCompetitiveScore != Float.NEGATIVE_INFINITY) {
+					scorer.setMinCompetitiveScore(minCompetitiveScore);
+				}
+			}
+
+			@Override
+			public void collect(int doc) throws IOException {
+				float score = scorer.score();
+				if (Float.isNaN(score)) {
+					// Ranked with the documents of probability zero rather than dropped
+					score = Float.NEGATIVE_INFINITY;
+				}
+				totalHits++;
+				if (pqTop == null) {
+					pq.add(new ScoreDoc(doc + docBase, score));
+					if (pq.size() == numHits) {
+						pqTop = pq.top();
+						updateMinCompetitiveScore(scorer);
+					}
+					return;
+				}
+				if (score <= pqTop.score) {
+					// Ties go to the document that was collected first
+					return;
+				}
+				pqTop.doc = doc + docBase;
+				pqTop.score = score;
+				pqTop = pq.updateTop();
+				updateMinCompetitiveScore(scorer);
+			}
+		};
+	}
+
+	private void updateMinCompetitiveScore(Scorable scorer) throws IOException {
+		if (pqTop.score != Float.NEGATIVE_INFINITY) {
+			float localMinScore = Math.nextUp(pqTop.score);
+			if (localMinScore > minCompetitiveScore) {
+				scorer.setMinCompetitiveScore(localMinScore);
+				minCompetitiveScore = localMinScore;
+				totalHitsRelation = TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO;
+			}
+		}
+	}
+
+	@Override
+	public ScoreMode scoreMode() {
+		return ScoreMode.TOP_SCORES;
+	}
+
+	private static class HitQueue extends PriorityQueue<ScoreDoc> {
+
+		HitQueue(int size) {
+			super(checkSize(size));
+		}
+
+		private static int checkSize(int size) {
+			if (size <= 0) {
+				throw new IllegalArgumentException("numHits must be > 0; got: " + size);
+			}
+			return size;
+		}
+
+		@Override
+		protected boolean lessThan(ScoreDoc hitA, ScoreDoc hitB) {
+			if (hitA.score == hitB.score) {
+				return hitA.doc > hitB.doc;
+			}
+			return hitA.score < hitB.score;
+		}
+
+	}
+
+}
@@ -0,0 +1,177 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.util.ArrayUtil;
+
+/**
+ * Lazily evaluates an unordered window (#uwN) over its child iterators. The
+ * positions of the children are merged into start order with a heap over
+ * the child cursors, and the windows are then found in a single scan of the
+ * merged positions.
+ * <p>
+ * Each child is matched by an extent of its own, and the extents of a window
+ * may not overlap, so that a token matched by several children, as in
+ * #uw8(a a) or #uw8(a #syn(a b)), only counts for one of them. A window takes
+ * the extents in start order, and a token shared by children that are both
+ * still missing goes to the first of them.
+ */
+public class IndriUnorderedWindowEnum extends IndriWindowEnum {
+
+	// Heap of child indexes ordered by the start of their current position
+	private final int[] heap;
+	private final int[] currentStarts;
+	private final int[] currentEnds;
+	private final int[] remaining;
+	// Index of the first position of the window each child was last matched in
+	private final int[] matchedIn;
+	// Positions of all children of the current document, in start order, and
+	// the child of each
+	private int[] starts;
+	private int[] ends;
+	private int[] children;
+
+	public IndriUnorderedWindowEnum(List<IndriDocAndPostingsIterator> iterators, int distance, String field) {
+		super(iterators, distance, field);
+		heap = new int[iterators.size()];
+		currentStarts = new int[iterators.size()];
+		currentEnds = new int[iterators.size()];
+		remaining = new int[iterators.size()];
+		matchedIn = new int[iterators.size()];
+		starts = new int[16];
+		ends = new int[16];
+		children = new int[16];
+	}
+
+	@Override
+	protected void addExtents(int currentDocID, IndriInvertedList docList) throws IOException {
+		int numPositions = mergePositions();
+		Arrays.fill(matchedIn, -1);
+
+		for (int i = 0; i < numPositions; i++) {
+			matchedIn[children[i]] = i;
+			int termsFound = 1;
+			int windowEnd = ends[i];
+			int current;
+
+			for (current = i + 1; current < numPositions && termsFound != iterators.size(); current++) {
+				if ((ends[current] - starts[i]) > distance && (distance >= 0)) {
+					break;
+				}
+
+				// A child that is still missing from this window, at an extent that
+				// does not overlap the ones already in it. Extents end at their last
+				// position, not after it
+				if (matchedIn[children[current]] != i && starts[current] > windowEnd) {
+					matchedIn[children[current]] = i;
+					windowEnd = ends[current];
+					termsFound++;
+				}
+			}
+			if (termsFound == iterators.size()) {
+				docList.addPosting(currentDocID, starts[i], windowEnd);
+				// The next window starts after the extent that completed this one
+				i = current - 1;
+			}
+		}
+	}
+
+	/**
+	 * Merges the positions of every child in the current document into start
+	 * order, breaking ties by child order, and returns the number of positions.
+	 */
+	private int mergePositions() throws IOException {
+		int heapSize = 0;
+		for (int j = 0; j < iterators.size(); j++) {
+			IndriDocAndPostingsIterator iterator = iterators.get(j);
+			remaining[j] = iterator.freq();
+			if (nextPosition(j)) {
+				heap[heapSize] = j;
+				upHeap(heapSize);
+				heapSize++;
+			}
+		}
+
+		int numPositions = 0;
+		while (heapSize > 0) {
+			int j = heap[0];
+			if (numPositions == starts.length) {
+				starts = ArrayUtil.grow(starts, numPositions + 1);
+				ends = ArrayUtil.grow(ends, numPositions + 1);
+				children = ArrayUtil.grow(children, numPositions + 1);
+			}
+			starts[numPositions] = currentStarts[j];
+			ends[numPositions] = currentEnds[j];
+			children[numPositions] = j;
+			numPositions++;
+
+			if (!nextPosition(j)) {
+				heapSize--;
+				heap[0] = heap[heapSize];
+			}
+			downHeap(heapSize);
+		}
+		return numPositions;
+	}
+
+	private boolean nextPosition(int j) throws IOException {
+		if (remaining[j] == 0) {
+			return false;
+		}
+		IndriDocAndPostingsIterator iterator = iterators.get(j);
+		currentStarts[j] = iterator.nextPosition();
+		currentEnds[j] = iterator.endPosition();
+		remaining[j]--;
+		return true;
+	}
+
+	private boolean lessThan(int a, int b) {
+		return currentStarts[a] < currentStarts[b] || (currentStarts[a] == currentStarts[b] && a < b);
+	}
+
+	private void upHeap(int i) {
+		int node = heap[i];
+		int parent = (i - 1) >>> 1;
+		while (i > 0 && lessThan(node, heap[parent])) {
+			heap[i] = heap[parent];
+			i = parent;
+			parent = (i - 1) >>> 1;
+		}
+		heap[i] = node;
+	}
+
+	private void downHeap(int heapSize) {
+		if (heapSize == 0) {
+			return;
+		}
+		int i = 0;
+		int node = heap[0];
+		int child = 1;
+		while (child < heapSize) {
+			if (child + 1 < heapSize && lessThan(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!lessThan(heap[child], node)) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+			child = 2 * i + 1;
+		}
+		heap[i] = node;
+	}
+
+}
@@ -21,46 +21,72 @@ import org.apache.lucene.search.Weight;
 
 public class IndriWeightedSumScorer extends IndriDisjunctionScorer {
 
+	// Only Indri scorers contribute to the score
+	private final IndriScorer[] indriScorers;
+	// Index of each Indri scorer in scorers
+	private final int[] indriClauses;
+	private final double[] boosts;
+	private final double boostSum;
+
 	protected IndriWeightedSumScorer(Weight weight, List<Scorer> subScorers, ScoreMode scoreMode, float boost)
 			throws IOException {
 		super(weight, subScorers, scoreMode, boost);
+		int numIndriScorers = 0;
+		for (Scorer scorer : scorers) {
+			if (scorer instanceof IndriScorer) {
+				numIndriScorers++;
+			}
+		}
+		indriScorers = new IndriScorer[numIndriScorers];
+		indriClauses = new int[numIndriScorers];
+		boosts = new double[numIndriScorers];
+		double boostSum = 0.0;
+		int i = 0;
+		for (int clause = 0; clause < scorers.length; clause++) {
+			Scorer scorer = scorers[clause];
+			if (scorer instanceof IndriScorer) {
+				indriScorers[i] = (IndriScorer) scorer;
+				indriClauses[i] = clause;
+				boosts[i] = indriScorers[i].getBoost();
+				boostSum += boosts[i];
+				i++;
+			}
+		}
+		this.boostSum = boostSum;
 	}
 
 	@Override
-	public float score(List<Scorer> subScorers) throws IOException {
-		int docId = this.docID();
-		return scoreDoc(subScorers, docId);
+	float scoreDoc(int docId) throws IOException {
+		if (boostSum == 0) {
+			return 0;
+		}
+		double score = 0;
+		for (int i = 0; i < indriScorers.length; i++) {
+			IndriScorer indriScorer = indriScorers[i];
+			float subScore = indriScorer.docID() == docId ? indriScorer.score() : indriScorer.smoothingScore(docId);
+			score += boosts[i] * Math.exp(subScore);
+		}
+		return (float) (Math.log((score / boostSum)));
 	}
 
+	/**
+	 * The score only grows with the scores of the clauses while no clause has a
+	 * negative weight.
+	 */
 	@Override
-	public float smoothingScore(List<Scorer> subScorers, int docId) throws IOException {
-		return scoreDoc(subScorers, docId);
-	}
-
-	private float scoreDoc(List<Scorer> subScorers, int docId) throws IOException {
-		double score = 0;
-		double boostSum = 0.0;
-		for (Scorer scorer : subScorers) {
-			if (scorer instanceof IndriScorer) {
-				IndriScorer indriScorer = (IndriScorer) scorer;
-				int scorerDocId = indriScorer.docID();
-				double subScore = 0;
-				if (docId == scorerDocId) {
-					score += indriScorer.getBoost() * Math.exp(indriScorer.score());
-				} else {
-					double smoothingScore = indriScorer.getBoost() * Math.exp(indriScorer.smoothingScore(docId));
-					score += smoothingScore;
-				}
-				subScore *= indriScorer.getBoost();
-				score += subScore;
-				boostSum += indriScorer.getBoost();
-			}
-		}
+	double combineBounds(float[] clauseBounds) {
 		if (boostSum == 0) {
 			return 0;
-		} else {
-			return (float) (Math.log((score / boostSum)));
 		}
+		double score = 0;
+		for (int i = 0; i < indriScorers.length; i++) {
+			float bound = clauseBounds[indriClauses[i]];
+			if (boosts[i] < 0 || Float.isNaN(bound)) {
+				return Double.POSITIVE_INFINITY;
+			}
+			score += boosts[i] * Math.exp(bound);
+		}
+		return Math.log(score / boostSum);
 	}
 
 }
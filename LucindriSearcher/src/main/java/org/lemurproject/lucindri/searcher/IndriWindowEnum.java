@@ -0,0 +1,178 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.lucene.search.ConjunctionDISI;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.search.TwoPhaseIterator;
+import org.apache.lucene.util.BytesRef;
+
+/**
+ * Lazily evaluates a window operator over its child iterators. Documents that
+ * contain every child are found first by a conjunction of the children, and
+ * the extents of the window are only computed for the documents the enum is
+ * advanced to. The two phases are exposed as a {@link TwoPhaseIterator} so
+ * that an enclosing window can run its conjunction over the approximations of
+ * nested windows.
+ */
+public abstract class IndriWindowEnum extends IndriDocAndPostingsIterator {
+
+	protected final List<IndriDocAndPostingsIterator> iterators;
+	protected final int distance;
+	private final List<TwoPhaseIterator> nestedTwoPhases;
+	// Extents of the current document
+	private final IndriInvertedList docList;
+	private final TwoPhaseIterator twoPhase;
+	private final DocIdSetIterator disi;
+	private int postingIndex;
+	private int endPosition;
+
+	protected IndriWindowEnum(List<IndriDocAndPostingsIterator> iterators, int distance, String field) {
+		this.iterators = iterators;
+		this.distance = distance;
+		docList = new IndriInvertedList(field);
+		endPosition = -1;
+
+		List<DocIdSetIterator> approximations = new ArrayList<>();
+		nestedTwoPhases = new ArrayList<>();
+		float nestedMatchCost = 0;
+		for (IndriDocAndPostingsIterator iterator : iterators) {
+			if (iterator instanceof IndriWindowEnum) {
+				TwoPhaseIterator nested = ((IndriWindowEnum) iterator).asTwoPhaseIterator();
+				approximations.add(nested.approximation());
+				nestedTwoPhases.add(nested);
+				nestedMatchCost += nested.matchCost();
+			} else {
+				approximations.add(iterator);
+			}
+		}
+		DocIdSetIterator approximation = approximations.size() == 1 ? approximations.get(0)
+				: ConjunctionDISI.intersectIterators(approximations);
+
+		// Matching walks the positions of every child once
+		float matchCost = nestedMatchCost + iterators.size();
+		twoPhase = new TwoPhaseIterator(approximation) {
+			@Override
+			public boolean matches() throws IOException {
+				return findExtents(approximation.docID());
+			}
+
+			@Override
+			public float matchCost() {
+				return matchCost;
+			}
+		};
+		disi = TwoPhaseIterator.asDocIdSetIterator(twoPhase);
+	}
+
+	/**
+	 * Returns a view of this enum where {@link TwoPhaseIterator#matches()}
+	 * computes the extents of the document the approximation is on.
+	 */
+	public TwoPhaseIterator asTwoPhaseIterator() {
+		return twoPhase;
+	}
+
+	/**
+	 * Adds the extents of the window in {@code docID} to {@code docList}, in order
+	 * of start position. Every child iterator is positioned on the document and
+	 * none of its positions have been read.
+	 */
+	protected abstract void addExtents(int docID, IndriInvertedList docList) throws IOException;
+
+	private boolean findExtents(int docID) throws IOException {
+		docList.clear();
+		postingIndex = 0;
+		endPosition = -1;
+		for (TwoPhaseIterator nested : nestedTwoPhases) {
+			if (!nested.matches()) {
+				return false;
+			}
+		}
+		addExtents(docID, docList);
+		return docList.getCtf() > 0;
+	}
+
+	@Override
+	public int docID() {
+		return disi.docID();
+	}
+
+	@Override
+	public int nextDoc() throws IOException {
+		return positioned(disi.nextDoc());
+	}
+
+	@Override
+	public int advance(int target) throws IOException {
+		return positioned(disi.advance(target));
+	}
+
+	private int positioned(int docID) {
+		if (docID == DocIdSetIterator.NO_MORE_DOCS) {
+			docList.clear();
+			postingIndex = 0;
+			endPosition = -1;
+		}
+		return docID;
+	}
+
+	@Override
+	public long cost() {
+		return disi.cost();
+	}
+
+	@Override
+	public int freq() throws IOException {
+		return docList.getCtf();
+	}
+
+	/**
+	 * Increments to the next extent of the current document and returns its start
+	 * position
+	 */
+	@Override
+	public int nextPosition() throws IOException {
+		int nextPosition = -1;
+		if (postingIndex < docList.getCtf()) {
+			nextPosition = docList.getStart(postingIndex);
+			endPosition = docList.getEnd(postingIndex);
+			postingIndex++;
+		}
+		return nextPosition;
+	}
+
+	@Override
+	public int endPosition() throws IOException {
+		return endPosition;
+	}
+
+	@Override
+	public int startOffset() throws IOException {
+		return 0;
+	}
+
+	@Override
+	public int endOffset() throws IOException {
+		return 0;
+	}
+
+	@Override
+	public BytesRef getPayload() throws IOException {
+		return null;
+	}
+
+}
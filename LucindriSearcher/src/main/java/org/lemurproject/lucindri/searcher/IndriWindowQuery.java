@@ -28,6 +28,20 @@ public class IndriWindowQuery extends IndriProximityQuery {
 		this.distance = distance;
 	}
 
+	public int getDistance() {
+		return distance;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		return super.equals(o) && distance == ((IndriWindowQuery) o).distance;
+	}
+
+	@Override
+	public int hashCode() {
+		return 31 * super.hashCode() + distance;
+	}
+
 	@Override
 	public Weight createWeight(IndexSearcher searcher, ScoreMode scoreMode, float boost) throws IOException {
 		return new IndriWindowWeight(this, searcher, getField(), distance, boost);
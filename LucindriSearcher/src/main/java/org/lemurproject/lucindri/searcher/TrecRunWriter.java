@@ -0,0 +1,127 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a run in TREC format. The results of each query are formatted as one
+ * block by the thread that ran the query, and handed to the writer with the
+ * position of the query in the run. Blocks are written in that order whatever
+ * order they arrive in, so runs made with several threads are identical to
+ * runs made with one. Output goes through one large buffer, and is compressed
+ * with gzip if the run file name ends with .gz.
+ */
+public class TrecRunWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+	private static final String LINE_SEPARATOR = System.lineSeparator();
+	private static final String RUN_TAG = "lucene";
+
+	private static final ThreadLocal<StringBuilder> BLOCK_BUFFER = ThreadLocal.withInitial(StringBuilder::new);
+
+	private final Writer writer;
+	private final OutputStream out;
+	private final boolean closeOut;
+	// Blocks that arrived before the blocks of the queries ahead of them
+	private final Map<Integer, String> pendingBlocks = new HashMap<>();
+	private int nextBlock;
+	// Copies blocks into the writer without making a string of them
+	private char[] chars = new char[BUFFER_SIZE];
+
+	/**
+	 * Creates a writer of the run file at {@code path}, or of standard output if
+	 * the path is null.
+	 */
+	public static TrecRunWriter open(String path) throws IOException {
+		if (path == null) {
+			return new TrecRunWriter(new FileOutputStream(FileDescriptor.out), false, false);
+		}
+		return new TrecRunWriter(Files.newOutputStream(Paths.get(path)), path.endsWith(".gz"), true);
+	}
+
+	private TrecRunWriter(OutputStream out, boolean gzip, boolean closeOut) throws IOException {
+		this.out = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+		this.closeOut = closeOut;
+		this.writer = new BufferedWriter(new OutputStreamWriter(this.out, StandardCharsets.UTF_8), BUFFER_SIZE);
+	}
+
+	/**
+	 * Returns the empty block buffer of the calling thread. It is reused for
+	 * every query the thread runs.
+	 */
+	public static StringBuilder getBlockBuffer() {
+		StringBuilder block = BLOCK_BUFFER.get();
+		block.setLength(0);
+		return block;
+	}
+
+	/** Appends a result line to a block. */
+	public static void appendResult(StringBuilder block, String queryNumber, String docId, int rank, float score) {
+		block.append(queryNumber).append(" Q0 ").append(docId).append(' ').append(rank).append(' ').append(score)
+				.append(' ').append(RUN_TAG).append(LINE_SEPARATOR);
+	}
+
+	/**
+	 * Writes the block of the query at position {@code sequence} of the run,
+	 * counting from 0, once the blocks of all the queries before it are written.
+	 * Every position must be written once.
+	 */
+	public synchronized void write(int sequence, StringBuilder block) throws IOException {
+		if (sequence != nextBlock) {
+			pendingBlocks.put(sequence, block.toString());
+			return;
+		}
+		if (chars.length < block.length()) {
+			chars = new char[block.length()];
+		}
+		block.getChars(0, block.length(), chars, 0);
+		writer.write(chars, 0, block.length());
+		nextBlock++;
+		String pendingBlock;
+		while ((pendingBlock = pendingBlocks.remove(nextBlock)) != null) {
+			writer.write(pendingBlock);
+			nextBlock++;
+		}
+	}
+
+	/**
+	 * Flushes the run. A run file is closed, standard output is left open. Blocks
+	 * still waiting for the queries ahead of them, which failed, are dropped.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		writer.flush();
+		if (out instanceof GZIPOutputStream) {
+			((GZIPOutputStream) out).finish();
+		}
+		if (closeOut) {
+			writer.close();
+		} else {
+			out.flush();
+		}
+	}
+
+}
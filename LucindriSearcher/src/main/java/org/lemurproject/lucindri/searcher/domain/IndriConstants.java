@@ -16,4 +16,21 @@ public class IndriConstants {
 	public final static String COLLECTION_TOTAL_DOCUMENT_NAME = "document_total_count";
 	public final static String FIELD_TOTAL_SUFFIX = "_totallen";
 
+	/**
+	 * Commit user data written by the indexer: the generation of the commit and
+	 * the maxDoc of the index the statistics were computed for, and per field
+	 * "docCount,sumTotalTermFreq,sumDocFreq".
+	 */
+	public final static String COMMIT_GENERATION = "lucindri.generation";
+	public final static String COMMIT_MAX_DOC = "lucindri.maxDoc";
+	public final static String COMMIT_FIELD_STATISTICS_PREFIX = "lucindri.fieldStatistics.";
+
+	/**
+	 * Suffix of the numeric doc values fields in which the indexer stores the
+	 * exact length of each document in a field, e.g. "fulltext.length". A field
+	 * of a query is given after a ".", so no field that can be searched has a
+	 * name with this suffix.
+	 */
+	public final static String FIELD_LENGTH_SUFFIX = ".length";
+
 }
@@ -18,6 +18,19 @@ public class JsonIndriQueryWrapper extends BaseObject {
 	private String index;
 	private String rule;
 	private Integer count;
+	private String runFile;
+	private Integer threads;
+	private Integer segmentThreads;
+	private Integer termCacheSize;
+	private Integer proximityCacheSize;
+	private Integer resultCacheSize;
+	private Boolean bigrams;
+	private Boolean cacheExternalIds;
+	private Integer fbDocs;
+	private Integer fbTerms;
+	private Float fbOrigWeight;
+	private Float fbMu;
+	private Integer fbCandidates;
 	private List<JsonIndriQuery> queries;
 
 	public String getIndex() {
@@ -44,6 +57,110 @@ public class JsonIndriQueryWrapper extends BaseObject {
 		this.count = count;
 	}
 
+	public String getRunFile() {
+		return runFile;
+	}
+
+	public void setRunFile(String runFile) {
+		this.runFile = runFile;
+	}
+
+	public Integer getThreads() {
+		return threads;
+	}
+
+	public void setThreads(Integer threads) {
+		this.threads = threads;
+	}
+
+	public Integer getSegmentThreads() {
+		return segmentThreads;
+	}
+
+	public void setSegmentThreads(Integer segmentThreads) {
+		this.segmentThreads = segmentThreads;
+	}
+
+	public Integer getTermCacheSize() {
+		return termCacheSize;
+	}
+
+	public void setTermCacheSize(Integer termCacheSize) {
+		this.termCacheSize = termCacheSize;
+	}
+
+	public Integer getProximityCacheSize() {
+		return proximityCacheSize;
+	}
+
+	public void setProximityCacheSize(Integer proximityCacheSize) {
+		this.proximityCacheSize = proximityCacheSize;
+	}
+
+	public Integer getResultCacheSize() {
+		return resultCacheSize;
+	}
+
+	public void setResultCacheSize(Integer resultCacheSize) {
+		this.resultCacheSize = resultCacheSize;
+	}
+
+	public Boolean getBigrams() {
+		return bigrams;
+	}
+
+	public void setBigrams(Boolean bigrams) {
+		this.bigrams = bigrams;
+	}
+
+	public Boolean getCacheExternalIds() {
+		return cacheExternalIds;
+	}
+
+	public void setCacheExternalIds(Boolean cacheExternalIds) {
+		this.cacheExternalIds = cacheExternalIds;
+	}
+
+	public Integer getFbDocs() {
+		return fbDocs;
+	}
+
+	public void setFbDocs(Integer fbDocs) {
+		this.fbDocs = fbDocs;
+	}
+
+	public Integer getFbTerms() {
+		return fbTerms;
+	}
+
+	public void setFbTerms(Integer fbTerms) {
+		this.fbTerms = fbTerms;
+	}
+
+	public Float getFbOrigWeight() {
+		return fbOrigWeight;
+	}
+
+	public void setFbOrigWeight(Float fbOrigWeight) {
+		this.fbOrigWeight = fbOrigWeight;
+	}
+
+	public Float getFbMu() {
+		return fbMu;
+	}
+
+	public void setFbMu(Float fbMu) {
+		this.fbMu = fbMu;
+	}
+
+	public Integer getFbCandidates() {
+		return fbCandidates;
+	}
+
+	public void setFbCandidates(Integer fbCandidates) {
+		this.fbCandidates = fbCandidates;
+	}
+
 	public List<JsonIndriQuery> getQueries() {
 		return queries;
 	}
@@ -14,7 +14,9 @@ package org.lemurproject.lucindri.searcher.parser;
 import java.io.IOException;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 
 import org.apache.lucene.analysis.Analyzer;
 import org.apache.lucene.analysis.TokenStream;
@@ -26,9 +28,10 @@ import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BoostQuery;
-import org.apache.lucene.search.IndriAndQuery;
 import org.apache.lucene.search.Query;
+import org.lemurproject.lucindri.analyzer.BigramAnalyzerWrapper;
 import org.lemurproject.lucindri.analyzer.EnglishAnalyzerConfigurable;
+import org.lemurproject.lucindri.searcher.IndriAndQuery;
 import org.lemurproject.lucindri.searcher.IndriBandQuery;
 import org.lemurproject.lucindri.searcher.IndriMaxQuery;
 import org.lemurproject.lucindri.searcher.IndriNearQuery;
@@ -52,6 +55,7 @@ public class IndriQueryParser {
 	private final static String WEIGHT = "weight";
 	private final static String WINDOW = "window";
 	private final static String UNORDER_WINDOW = "uw";
+	private final static String ORDER_WINDOW = "od";
 	private final static String WSUM = "wsum";
 	private final static String MAX = "max";
 	private final static String COMBINE = "combine";
@@ -63,6 +67,8 @@ public class IndriQueryParser {
 
 	private final Analyzer analyzer;
 	private String defaultField;
+	// Fields that have a bigram field in the index
+	private Set<String> bigramFields = Collections.emptySet();
 
 	public IndriQueryParser() throws IOException {
 		analyzer = getConfigurableAnalyzer();
@@ -76,6 +82,15 @@ public class IndriQueryParser {
 		defaultField = field;
 	}
 
+	/**
+	 * Sets the fields that were indexed with a bigram field. Ordered windows #1 of
+	 * two terms of these fields are then looked up as single bigram terms, which
+	 * match the same documents with the same statistics.
+	 */
+	public void setBigramFields(Set<String> bigramFields) {
+		this.bigramFields = bigramFields;
+	}
+
 	private String getDefaultField(IndexReader reader) throws IOException {
 		List<String> fields = new ArrayList<String>();
 		Document doc = reader.document(1);
@@ -156,6 +171,9 @@ public class IndriQueryParser {
 		} else if (operatorNameLowerCase.startsWith(UNORDER_WINDOW)) {
 			String[] parts = operatorNameLowerCase.split(UNORDER_WINDOW);
 			operatorNameLowerCase = String.join("/", WINDOW, parts[1]);
+		} else if (operatorNameLowerCase.matches(ORDER_WINDOW + "\\d+")) {
+			// #odN is the same ordered window as #N
+			operatorNameLowerCase = String.join("/", NEAR, operatorNameLowerCase.substring(ORDER_WINDOW.length()));
 		}
 
 		// Remove the distance argument to proximity operators.
@@ -385,6 +403,15 @@ public class IndriQueryParser {
 	}
 
 	public BooleanClause createBooleanClause(QueryParserQuery queryTree) {
+		return createBooleanClause(queryTree, false);
+	}
+
+	/**
+	 * Creates the clause of a query tree. Clauses inside proximity operators
+	 * must keep their positions, so only the ones that are scored directly may
+	 * be replaced by bigram terms.
+	 */
+	private BooleanClause createBooleanClause(QueryParserQuery queryTree, boolean inProximity) {
 		Query query = null;
 		if (queryTree instanceof QueryParserOperatorQuery) {
 			QueryParserOperatorQuery operatorQuery = (QueryParserOperatorQuery) queryTree;
@@ -392,8 +419,11 @@ public class IndriQueryParser {
 			// Create clauses for subqueries
 			List<BooleanClause> clauses = new ArrayList<>();
 			if (operatorQuery.getSubqueries() != null) {
+				String operator = operatorQuery.getOperator();
+				boolean proximity = inProximity || operator.equalsIgnoreCase(NEAR) || operator.equalsIgnoreCase(WINDOW)
+						|| operator.equalsIgnoreCase(BAND) || operator.equalsIgnoreCase(SYNONYM);
 				for (QueryParserQuery subquery : operatorQuery.getSubqueries()) {
-					BooleanClause clause = createBooleanClause(subquery);
+					BooleanClause clause = createBooleanClause(subquery, proximity);
 					if (clause != null) {
 						clauses.add(clause);
 					}
@@ -409,7 +439,10 @@ public class IndriQueryParser {
 				} else if (operatorQuery.getOperator().equalsIgnoreCase(WAND)) {
 					query = new IndriAndQuery(clauses);
 				} else if (operatorQuery.getOperator().equalsIgnoreCase(NEAR)) {
-					if (clauses.size() > 1) {
+					if (!inProximity && operatorQuery.getDistance() == 1) {
+						query = getBigramQuery(clauses, operatorQuery.getField());
+					}
+					if (query == null && clauses.size() > 1) {
 						query = new IndriNearQuery(clauses, operatorQuery.getField(), operatorQuery.getDistance());
 					}
 				} else if (operatorQuery.getOperator().equalsIgnoreCase(WINDOW)) {
@@ -446,6 +479,28 @@ public class IndriQueryParser {
 		return clause;
 	}
 
+	/**
+	 * Returns the bigram term query that replaces #1 of the clauses, or null if
+	 * they are not two different terms of a field with a bigram field. The bigram
+	 * is scored with the lengths and statistics of the field of the window.
+	 */
+	private Query getBigramQuery(List<BooleanClause> clauses, String field) {
+		if (clauses.size() != 2 || !(clauses.get(0).getQuery() instanceof IndriTermQuery)
+				|| !(clauses.get(1).getQuery() instanceof IndriTermQuery)) {
+			return null;
+		}
+		Term term1 = ((IndriTermQuery) clauses.get(0).getQuery()).getTerm();
+		Term term2 = ((IndriTermQuery) clauses.get(1).getQuery()).getTerm();
+		// #1 of a term with itself never matches, unlike its bigram
+		if (!term1.field().equals(term2.field()) || term1.bytes().equals(term2.bytes())
+				|| !bigramFields.contains(term1.field())) {
+			return null;
+		}
+		Term bigram = new Term(term1.field() + BigramAnalyzerWrapper.BIGRAM_FIELD_SUFFIX,
+				BigramAnalyzerWrapper.getBigram(term1.text(), term2.text()));
+		return new IndriTermQuery(bigram, field);
+	}
+
 	/**
 	 * Given part of a query string, returns an array of terms with stopwords
 	 * removed and the terms stemmed using the Krovetz stemmer. Use this method to
@@ -14,7 +14,9 @@ package org.lemurproject.lucindri.searcher.similarities;
 import java.util.List;
 import java.util.Locale;
 
+import org.apache.lucene.search.CollectionStatistics;
 import org.apache.lucene.search.Explanation;
+import org.apache.lucene.search.TermStatistics;
 import org.apache.lucene.search.similarities.BasicStats;
 
 public class IndriDirichletSimilarity extends IndriSimilarity {
@@ -50,6 +52,19 @@ public class IndriDirichletSimilarity extends IndriSimilarity {
 		return (double) (Math.log(score));
 	}
 
+	/** Precomputes &mu; times the collection probability of the term. */
+	@Override
+	protected void fillBasicStats(BasicStats stats, CollectionStatistics collectionStats, TermStatistics termStats) {
+		super.fillBasicStats(stats, collectionStats, termStats);
+		IndriStats indriStats = (IndriStats) stats;
+		indriStats.setSmoothingWeight(mu * indriStats.getCollectionProbability());
+	}
+
+	@Override
+	protected double smoothingScore(BasicStats stats, double docLen) {
+		return Math.log(((IndriStats) stats).getSmoothingWeight() / (docLen + mu));
+	}
+
 	@Override
 	protected void explain(List<Explanation> subs, BasicStats stats, double freq, double docLen) {
 		if (stats.getBoost() != 1.0f) {
@@ -70,6 +85,7 @@ public class IndriDirichletSimilarity extends IndriSimilarity {
 		return mu;
 	}
 
+	@Override
 	public String getName() {
 		return String.format(Locale.ROOT, "IndriDirichlet(%f)", getMu());
 	}
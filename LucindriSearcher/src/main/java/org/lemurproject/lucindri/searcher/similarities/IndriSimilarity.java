@@ -128,6 +128,18 @@ public abstract class IndriSimilarity extends Similarity {
 	 */
 	protected abstract double score(BasicStats stats, double freq, double docLen);
 
+	/**
+	 * Scores a document of length {@code docLen} that does not contain the term.
+	 * Scores by encoded norm are looked up in a table, but exact lengths, which
+	 * the Lucindri indexer stores for every document, are scored one by one.
+	 * Subclasses can precompute the part of the score that only depends on the
+	 * term in {@link #fillBasicStats}, so that little more than a logarithm is
+	 * left per document.
+	 */
+	protected double smoothingScore(BasicStats stats, double docLen) {
+		return score(stats, 0, docLen);
+	}
+
 	/**
 	 * Explains the score. The implementation here provides a basic explanation in
 	 * the format <em>score(name-of-similarity, doc=doc-id, freq=term-frequency),
@@ -151,6 +163,13 @@ public abstract class IndriSimilarity extends Similarity {
 
 	// ------------------------------ Norm handling ------------------------------
 
+	/**
+	 * Flag of the norm values that carry the exact length of a document, read
+	 * from its length column, instead of the one byte encoding of the length that
+	 * Lucene norms hold.
+	 */
+	public static final long EXACT_LENGTH = 1L << 32;
+
 	/** Cache of decoded bytes. */
 	private static final float[] LENGTH_TABLE = new float[256];
 
@@ -160,6 +179,11 @@ public abstract class IndriSimilarity extends Similarity {
 		}
 	}
 
+	/** Returns the norm value that passes an exact document length to scorers. */
+	public static long exactLengthNorm(long length) {
+		return EXACT_LENGTH | length;
+	}
+
 	public final void setNorm(int value) {
 		this.norm = value;
 	}
@@ -182,6 +206,19 @@ public abstract class IndriSimilarity extends Similarity {
 
 	}
 
+	/** Returns the name of the smoothing rule and its parameters. */
+	public String getName() {
+		return getClass().getSimpleName();
+	}
+
+	/**
+	 * Returns a key that is equal for similarities that score documents the same
+	 * way, with the same smoothing rule, parameters and collection model.
+	 */
+	public String getScoringKey() {
+		return getClass().getName() + ":" + getName() + ":" + collectionModel.getClass().getName();
+	}
+
 	public Map<String, Long> getTotalFieldLengths() {
 		return fieldDocLenTotalMap;
 	}
@@ -205,18 +242,37 @@ public abstract class IndriSimilarity extends Similarity {
 	 */
 	final class BasicSimScorer extends SimScorer {
 		final BasicStats stats;
+		/**
+		 * Scores of the term in a document that does not contain it, by encoded
+		 * norm. Smoothing scores are needed for every clause that is not on a
+		 * document, so they are computed once per term.
+		 */
+		private final float[] smoothingScores;
 
 		BasicSimScorer(BasicStats stats) {
 			this.stats = stats;
+			smoothingScores = new float[LENGTH_TABLE.length];
+			for (int i = 0; i < LENGTH_TABLE.length; i++) {
+				smoothingScores[i] = (float) smoothingScore(stats, LENGTH_TABLE[i]);
+			}
 		}
 
 		double getLengthValue(long norm) {
+			if ((norm & EXACT_LENGTH) != 0) {
+				return norm & ~EXACT_LENGTH;
+			}
 			return LENGTH_TABLE[Byte.toUnsignedInt((byte) norm)];
 			// return LENGTH_TABLE[(int) norm];
 		}
 
 		@Override
 		public float score(float freq, long norm) {
+			if (freq == 0) {
+				if ((norm & EXACT_LENGTH) != 0) {
+					return (float) smoothingScore(stats, norm & ~EXACT_LENGTH);
+				}
+				return smoothingScores[Byte.toUnsignedInt((byte) norm)];
+			}
 			return (float) IndriSimilarity.this.score(stats, freq, getLengthValue(norm));
 		}
 
@@ -258,6 +314,8 @@ public abstract class IndriSimilarity extends Similarity {
 	public static class IndriStats extends BasicStats {
 		/** The probability that the current term is generated by the collection. */
 		private double collectionProbability;
+		/** The part of the smoothing score that only depends on the term. */
+		private double smoothingWeight;
 
 		/**
 		 * Creates LMStats for the provided field and query-time boost
@@ -279,6 +337,20 @@ public abstract class IndriSimilarity extends Similarity {
 		public final void setCollectionProbability(double collectionProbability) {
 			this.collectionProbability = collectionProbability;
 		}
+
+		/**
+		 * Returns the part of the smoothing score that only depends on the term.
+		 */
+		public final double getSmoothingWeight() {
+			return smoothingWeight;
+		}
+
+		/**
+		 * Sets the part of the smoothing score that only depends on the term.
+		 */
+		public final void setSmoothingWeight(double smoothingWeight) {
+			this.smoothingWeight = smoothingWeight;
+		}
 	}
 
 	/** A strategy for computing the collection language model. */
@@ -13,7 +13,6 @@ package org.lemurproject.lucindri.searcher.solr;
 
 import java.util.StringJoiner;
 
-import org.apache.lucene.document.Document;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.TopDocs;
@@ -21,12 +20,11 @@ import org.apache.solr.handler.RequestHandlerBase;
 import org.apache.solr.request.SolrQueryRequest;
 import org.apache.solr.response.SolrQueryResponse;
 import org.apache.solr.search.SolrIndexSearcher;
+import org.lemurproject.lucindri.searcher.IndriExternalIds;
 import org.lemurproject.lucindri.searcher.parser.IndriQueryParser;
 
 public class LucindriRequestHandler extends RequestHandlerBase {
 
-	private final static String EXTERNALID_FIELD = "externalId";
-
 	public void handleRequestBody(SolrQueryRequest req, SolrQueryResponse rsp) throws Exception {
 		String query = req.getParams().get("name");
 		if (query != null) {
@@ -50,14 +48,12 @@ public class LucindriRequestHandler extends RequestHandlerBase {
 		if (test != null) {
 			TopDocs hitDocs = searcher.search(test, 10);
 			ScoreDoc[] scoreDocs = hitDocs.scoreDocs;
+			String[] fileNames = new IndriExternalIds(searcher.getIndexReader()).get(scoreDocs);
 
 			int rank = 0;
 			for (ScoreDoc scoreDoc : scoreDocs) {
+				String fileName = fileNames[rank];
 				rank++;
-				int docid = scoreDoc.doc;
-
-				Document doc = searcher.doc(docid);
-				String fileName = doc.get(EXTERNALID_FIELD);
 
 				trecResults.add(String.join(" ", "1", "Q0", fileName, String.valueOf(rank),
 						String.valueOf(scoreDoc.score), "lucene"));
@@ -0,0 +1,434 @@
+/*
+ * ===============================================================================================
+ * Copyright (c) 2020 Carnegie Mellon University and University of Massachusetts. All Rights
+ * Reserved.
+ *
+ * Use of the Lemur Toolkit for Language Modeling and Information Retrieval is subject to the terms
+ * of the software license set forth in the LICENSE file included with this software, and also
+ * available at http://www.lemurproject.org/license.html
+ *
+ * ================================================================================================
+ */
+package org.lemurproject.lucindri.searcher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexOptions;
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.MultiReader;
+import org.apache.lucene.index.NoMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.similarities.LMDirichletSimilarity;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FSDirectory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.lemurproject.lucindri.analyzer.BigramAnalyzerWrapper;
+import org.lemurproject.lucindri.searcher.domain.IndriConstants;
+import org.lemurproject.lucindri.searcher.parser.IndriQueryParser;
+import org.lemurproject.lucindri.searcher.similarities.IndriDirichletSimilarity;
+
+/**
+ * Checks that the top hits of term, window, #syn, #combine, #wsum, #or and #max
+ * queries do not depend on how the index is laid out or searched. Every
+ * configuration is compared with an exhaustive search of a single segment
+ * index without caches.
+ * The documents are random words t1, t2, ... of a small vocabulary, so that
+ * every query term and window occurs in every segment: a #combine clause that
+ * matches nothing in a segment is left out of the scores of its documents.
+ * Stopwords between the words leave gaps in their positions.
+ */
+public class IndriSearchParityTest {
+
+	private final static String FULLTEXT_FIELD = "fulltext";
+	private final static String BIGRAM_FIELD = FULLTEXT_FIELD + BigramAnalyzerWrapper.BIGRAM_FIELD_SUFFIX;
+	private final static String STOPWORD = "the";
+	private final static String EXTERNALID_FIELD = "externalId";
+	private final static long SEED = 42;
+	private final static int NUM_DOCS = 3000;
+	private final static int DOC_LENGTH = 100;
+	private final static int VOCABULARY_SIZE = 50;
+	// One word in STOPWORD_RATE is a stopword
+	private final static int STOPWORD_RATE = 8;
+	private final static int SEGMENTS = 8;
+	private final static int SHARDS = 3;
+	private final static int COUNT = 20;
+	private final static float DELTA = 1e-5f;
+
+	private final static String[] QUERIES = { "t3", "t12", "#combine(t2 t9)", "#combine(t4 t11 t17)", "#1(t2 t5)",
+			"#od2(t3 t7)", "#uw8(t4 t6)", "#syn(t6 t14 t19)", "#syn(t6 #syn(t6 t14))", "#combine(t5 #1(t1 t3))",
+			"#combine(t8 #uw8(t2 t9) #syn(t10 t15))", "#combine(#od3(t1 t2) #uw5(t3 t4))",
+			"#combine(t3 #wsum(2 t4 1 t16))", "#combine(t2 #or(t7 t13))", "#combine(t9 #max(t5 t18))" };
+
+	// Synonyms that repeat an extent, and the synonym without the repeats they
+	// are the same as
+	private final static String[][] SYNONYMS = { { "#syn(t6 t6)", "#syn(t6)" },
+			{ "#syn(t6 #syn(t6 t14))", "#syn(t6 t14)" } };
+
+	// Documents with repeated terms, and unordered windows whose children match
+	// the same tokens, with the documents each matches
+	private final static List<String> REPEATED_TERM_DOCS = Arrays.asList("t6", "t6 t6",
+			"t6 t1 t1 t1 t1 t1 t1 t1 t1 t6", "t6 t14", "t14 t14");
+	private final static String[][] REPEATED_TERM_WINDOWS = { { "#uw8(t6 t6)", "doc1" },
+			{ "#uw8(t6 #syn(t6 t14))", "doc1 doc3" }, { "#uw8(#syn(t6 t14) t6)", "doc1 doc3" },
+			{ "#uw8(#syn(t6 t14) #syn(t6 t14))", "doc1 doc3 doc4" } };
+
+	// Documents with phrases at their first position, and ordered windows with
+	// the documents each matches
+	private final static List<String> PHRASE_DOCS = Arrays.asList("t2 t5", "t5 t2", "t5 t1 t2", "t2 t1 t5",
+			"t1 t2 t5");
+	private final static String[][] ORDERED_WINDOWS = { { "#1(t2 t5)", "doc0 doc4" }, { "#od1(t2 t5)", "doc0 doc4" },
+			{ "#od2(t2 t5)", "doc0 doc3 doc4" }, { "#1(t5 t2)", "doc1" }, { "#1(t5 t1 t2)", "doc2" } };
+
+	// Windows that the query parser looks up in the bigram field, and that must
+	// rank like their positional match
+	private final static String[] BIGRAMS = { "#1(t2 t5)", "#1(t1 t3)", "#combine(t8 #1(t4 t6))",
+			"#combine(t5 #1(t1 t3))" };
+
+	@ClassRule
+	public static TemporaryFolder folder = new TemporaryFolder();
+
+	private static List<Directory> directories = new ArrayList<>();
+	private static IndexReader singleSegmentReader;
+	private static IndexReader multiSegmentReader;
+	private static IndexReader shardedReader;
+	private static List<Query> queries;
+
+	@BeforeClass
+	public static void buildIndexes() throws IOException {
+		List<String> docs = generateDocuments();
+		singleSegmentReader = writeIndex(folder.newFolder("single").toPath(), docs, 0, 1, NUM_DOCS);
+		multiSegmentReader = writeIndex(folder.newFolder("multi").toPath(), docs, 0, 1, NUM_DOCS / SEGMENTS);
+		// Documents are dealt to the shards in turn
+		IndexReader[] shards = new IndexReader[SHARDS];
+		for (int i = 0; i < SHARDS; i++) {
+			shards[i] = writeIndex(folder.newFolder("shard-" + i).toPath(), docs, i, SHARDS, NUM_DOCS);
+		}
+		shardedReader = new MultiReader(shards, true);
+
+		IndriQueryParser queryParser = new IndriQueryParser();
+		queries = new ArrayList<>();
+		for (String query : QUERIES) {
+			queries.add(queryParser.parseQuery(query));
+		}
+	}
+
+	@AfterClass
+	public static void closeIndexes() throws IOException {
+		singleSegmentReader.close();
+		multiSegmentReader.close();
+		shardedReader.close();
+		for (Directory directory : directories) {
+			directory.close();
+		}
+	}
+
+	/** Words are drawn with Zipf distributed frequencies, lengths uniformly. */
+	private static List<String> generateDocuments() {
+		double[] cumulativeFrequencies = new double[VOCABULARY_SIZE];
+		double sum = 0;
+		for (int rank = 1; rank <= VOCABULARY_SIZE; rank++) {
+			sum += 1.0 / rank;
+			cumulativeFrequencies[rank - 1] = sum;
+		}
+		Random random = new Random(SEED);
+		List<String> docs = new ArrayList<>(NUM_DOCS);
+		StringBuilder text = new StringBuilder();
+		for (int doc = 0; doc < NUM_DOCS; doc++) {
+			int length = DOC_LENGTH / 2 + random.nextInt(DOC_LENGTH + 1);
+			text.setLength(0);
+			for (int i = 0; i < length; i++) {
+				if (random.nextInt(STOPWORD_RATE) == 0) {
+					text.append(i > 0 ? " " : "").append(STOPWORD);
+					continue;
+				}
+				int index = Arrays.binarySearch(cumulativeFrequencies, random.nextDouble() * sum);
+				text.append(i > 0 ? " t" : "t").append((index >= 0 ? index : -index - 1) + 1);
+			}
+			docs.add(text.toString());
+		}
+		return docs;
+	}
+
+	/**
+	 * Writes every {@code step}th document from {@code first} the way the
+	 * Lucindri indexer does with bigrams, with a segment per {@code segmentSize}
+	 * documents.
+	 */
+	private static IndexReader writeIndex(Path path, List<String> docs, int first, int step, int segmentSize)
+			throws IOException {
+		Directory directory = FSDirectory.open(path);
+		directories.add(directory);
+		IndexWriterConfig config = new IndexWriterConfig(
+				new BigramAnalyzerWrapper(IndriSearch.getConfigurableAnalyzer()));
+		config.setSimilarity(new LMDirichletSimilarity());
+		config.setMergePolicy(NoMergePolicy.INSTANCE);
+		FieldType bigramFieldType = new FieldType();
+		bigramFieldType.setTokenized(true);
+		bigramFieldType.setOmitNorms(true);
+		bigramFieldType.setIndexOptions(IndexOptions.DOCS_AND_FREQS);
+		bigramFieldType.freeze();
+		try (IndexWriter writer = new IndexWriter(directory, config)) {
+			int docsInSegment = 0;
+			for (int doc = first; doc < docs.size(); doc += step) {
+				String text = docs.get(doc);
+				Document luceneDoc = new Document();
+				luceneDoc.add(new StringField(EXTERNALID_FIELD, "doc" + doc, Store.YES));
+				luceneDoc.add(new TextField(FULLTEXT_FIELD, text, Store.NO));
+				luceneDoc.add(new Field(BIGRAM_FIELD, text, bigramFieldType));
+				// Stopwords are not counted
+				long length = Arrays.stream(text.split(" ")).filter(word -> !word.equals(STOPWORD)).count();
+				luceneDoc.add(
+						new NumericDocValuesField(FULLTEXT_FIELD + IndriConstants.FIELD_LENGTH_SUFFIX, length));
+				writer.addDocument(luceneDoc);
+				if (++docsInSegment == segmentSize) {
+					writer.flush();
+					docsInSegment = 0;
+				}
+			}
+		}
+		return DirectoryReader.open(directory);
+	}
+
+	private static IndriIndexSearcher newSearcher(IndexReader reader) {
+		IndriIndexSearcher searcher = new IndriIndexSearcher(reader);
+		searcher.setSimilarity(new IndriDirichletSimilarity());
+		searcher.setTermCacheSize(0);
+		return searcher;
+	}
+
+	/** Scores every document that matches the query and keeps the best ones. */
+	private static TopDocs searchExhaustively(IndexSearcher searcher, Query query) throws IOException {
+		TopDocs topDocs = searcher.search(query,
+				IndriTopDocsCollector.createManager(searcher.getIndexReader().maxDoc()));
+		ScoreDoc[] scoreDocs = Arrays.copyOf(topDocs.scoreDocs, Math.min(COUNT, topDocs.scoreDocs.length));
+		return new TopDocs(topDocs.totalHits, scoreDocs);
+	}
+
+	/**
+	 * Checks that the hits have the same scores rank by rank, and that the
+	 * documents scored above the last hit are the same. Documents tied with the
+	 * last hit may be cut off differently in another document order.
+	 */
+	private static void assertSameHits(String query, IndexSearcher expectedSearcher, TopDocs expected,
+			IndexSearcher actualSearcher, TopDocs actual) throws IOException {
+		assertEquals(query, expected.scoreDocs.length, actual.scoreDocs.length);
+		if (expected.scoreDocs.length == 0) {
+			return;
+		}
+		for (int i = 0; i < expected.scoreDocs.length; i++) {
+			assertEquals(query + " rank " + (i + 1), expected.scoreDocs[i].score, actual.scoreDocs[i].score, DELTA);
+		}
+		float lastScore = expected.scoreDocs[expected.scoreDocs.length - 1].score;
+		Map<String, Float> actualScores = getScoresById(actualSearcher, actual);
+		for (Map.Entry<String, Float> hit : getScoresById(expectedSearcher, expected).entrySet()) {
+			if (hit.getValue() > lastScore + DELTA) {
+				Float actualScore = actualScores.get(hit.getKey());
+				assertNotNull(query + " " + hit.getKey(), actualScore);
+				assertEquals(query + " " + hit.getKey(), hit.getValue(), actualScore, DELTA);
+			}
+		}
+	}
+
+	private static Map<String, Float> getScoresById(IndexSearcher searcher, TopDocs topDocs) throws IOException {
+		Map<String, Float> scores = new HashMap<>();
+		for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
+			scores.put(searcher.doc(scoreDoc.doc).get(EXTERNALID_FIELD), scoreDoc.score);
+		}
+		return scores;
+	}
+
+	private static void assertSameHits(IndexReader reader) throws IOException {
+		IndexSearcher expectedSearcher = newSearcher(singleSegmentReader);
+		IndexSearcher actualSearcher = newSearcher(reader);
+		for (int i = 0; i < queries.size(); i++) {
+			Query query = queries.get(i);
+			assertSameHits(QUERIES[i], expectedSearcher, searchExhaustively(expectedSearcher, query), actualSearcher,
+					searchExhaustively(actualSearcher, query));
+		}
+	}
+
+	/**
+	 * An extent of several synonyms is only counted once, in the document
+	 * frequencies and collection frequency of the #syn as well.
+	 */
+	@Test
+	public void testSynonymsWithRepeatedExtents() throws IOException {
+		IndriQueryParser queryParser = new IndriQueryParser();
+		for (IndexReader reader : Arrays.asList(singleSegmentReader, multiSegmentReader)) {
+			IndexSearcher searcher = newSearcher(reader);
+			for (String[] synonyms : SYNONYMS) {
+				assertSameHits(synonyms[0], searcher, searchExhaustively(searcher, queryParser.parseQuery(synonyms[1])),
+						searcher, searchExhaustively(searcher, queryParser.parseQuery(synonyms[0])));
+			}
+		}
+	}
+
+	/**
+	 * Every child of an unordered window is matched by a token of its own, even
+	 * when a token could match several children.
+	 */
+	@Test
+	public void testUnorderedWindowsWithRepeatedTerms() throws IOException {
+		IndriQueryParser queryParser = new IndriQueryParser();
+		try (IndexReader reader = writeIndex(folder.newFolder("repeated").toPath(), REPEATED_TERM_DOCS, 0, 1,
+				REPEATED_TERM_DOCS.size())) {
+			IndexSearcher searcher = newSearcher(reader);
+			for (String[] window : REPEATED_TERM_WINDOWS) {
+				TopDocs topDocs = searchExhaustively(searcher, queryParser.parseQuery(window[0]));
+				assertEquals(window[0], new TreeSet<>(Arrays.asList(window[1].split(" "))),
+						getScoresById(searcher, topDocs).keySet());
+			}
+		}
+	}
+
+	/**
+	 * Ordered windows match from the first position of a document on, and only
+	 * in order.
+	 */
+	@Test
+	public void testOrderedWindowsAtFirstPosition() throws IOException {
+		IndriQueryParser queryParser = new IndriQueryParser();
+		try (IndexReader reader = writeIndex(folder.newFolder("phrases").toPath(), PHRASE_DOCS, 0, 1,
+				PHRASE_DOCS.size())) {
+			IndexSearcher searcher = newSearcher(reader);
+			for (String[] window : ORDERED_WINDOWS) {
+				TopDocs topDocs = searchExhaustively(searcher, queryParser.parseQuery(window[0]));
+				assertEquals(window[0], new TreeSet<>(Arrays.asList(window[1].split(" "))),
+						getScoresById(searcher, topDocs).keySet());
+			}
+		}
+	}
+
+	/**
+	 * #1 of two terms is looked up as a single term of the bigram field, which
+	 * has no pairs across the gaps left by stopwords, like the positional window.
+	 * Both count the phrases at the first position of a document.
+	 */
+	@Test
+	public void testBigrams() throws IOException {
+		IndriQueryParser positionalParser = new IndriQueryParser();
+		IndriQueryParser bigramParser = new IndriQueryParser();
+		bigramParser.setBigramFields(Collections.singleton(FULLTEXT_FIELD));
+		assertTrue(bigramParser.parseQuery(BIGRAMS[0]) instanceof IndriTermQuery);
+		try (IndexReader phraseReader = writeIndex(folder.newFolder("bigram-phrases").toPath(), PHRASE_DOCS, 0, 1,
+				PHRASE_DOCS.size())) {
+			for (IndexReader reader : Arrays.asList(singleSegmentReader, multiSegmentReader, phraseReader)) {
+				IndexSearcher searcher = newSearcher(reader);
+				for (String query : BIGRAMS) {
+					assertSameHits(query, searcher, searchExhaustively(searcher, positionalParser.parseQuery(query)),
+							searcher, searchExhaustively(searcher, bigramParser.parseQuery(query)));
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testMultipleSegments() throws IOException {
+		assertEquals(SEGMENTS, multiSegmentReader.leaves().size());
+		assertSameHits(multiSegmentReader);
+	}
+
+	@Test
+	public void testShards() throws IOException {
+		assertSameHits(shardedReader);
+	}
+
+	/**
+	 * Collecting only the top hits lets #combine skip documents that cannot make
+	 * it into them, and term scorers skip blocks by their impacts.
+	 */
+	@Test
+	public void testPruning() throws IOException {
+		for (IndexReader reader : Arrays.asList(singleSegmentReader, multiSegmentReader)) {
+			IndexSearcher searcher = newSearcher(reader);
+			for (int i = 0; i < queries.size(); i++) {
+				Query query = queries.get(i);
+				TopDocs expected = searchExhaustively(searcher, query);
+				TopDocs actual = searcher.search(query, COUNT);
+				assertSameHits(QUERIES[i], searcher, expected, searcher, actual);
+				for (int j = 0; j < expected.scoreDocs.length; j++) {
+					assertEquals(QUERIES[i] + " rank " + (j + 1), expected.scoreDocs[j].doc, actual.scoreDocs[j].doc);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the queries twice with the TermStates, proximity and result caches
+	 * on, so that the second run is served from the caches.
+	 */
+	@Test
+	public void testCaches() throws IOException {
+		IndexSearcher expectedSearcher = newSearcher(singleSegmentReader);
+		IndriIndexSearcher searcher = newSearcher(multiSegmentReader);
+		searcher.setTermCacheSize(IndriIndexSearcher.DEFAULT_TERM_CACHE_SIZE);
+		searcher.setProximityCacheSize(1 << 20);
+		searcher.setResultCache(new IndriResultCache(100));
+		for (int run = 0; run < 2; run++) {
+			for (int i = 0; i < queries.size(); i++) {
+				Query query = queries.get(i);
+				assertSameHits(QUERIES[i], expectedSearcher, searchExhaustively(expectedSearcher, query), searcher,
+						searcher.search(query, COUNT));
+			}
+		}
+		assertTrue(searcher.getTermStatesCache().getHitCount() > 0);
+		assertTrue(searcher.getProximityListCache().getHitCount() > 0);
+		assertEquals(queries.size(), searcher.getResultCache().getHitCount());
+	}
+
+	/**
+	 * Scores the leaf slices of the multi-segment index concurrently, and the
+	 * statistics of the window operators are counted by whichever slice gets
+	 * to them first.
+	 */
+	@Test
+	public void testSegmentThreads() throws IOException {
+		IndexSearcher expectedSearcher = newSearcher(singleSegmentReader);
+		ExecutorService executor = Executors.newFixedThreadPool(3);
+		try {
+			IndriIndexSearcher searcher = new IndriIndexSearcher(multiSegmentReader, executor);
+			searcher.setSimilarity(new IndriDirichletSimilarity());
+			assertTrue(searcher.getSlices().length > 1);
+			for (int i = 0; i < queries.size(); i++) {
+				Query query = queries.get(i);
+				assertSameHits(QUERIES[i], expectedSearcher, searchExhaustively(expectedSearcher, query), searcher,
+						searcher.search(query, COUNT));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+}